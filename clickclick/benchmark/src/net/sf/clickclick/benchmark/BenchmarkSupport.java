@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import net.sf.clickclick.domain.Customer;
+
+/**
+ * Provides fixtures shared by the ClickClick benchmarks.
+ */
+public final class BenchmarkSupport {
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Prevent instantiation.
+     */
+    private BenchmarkSupport() {
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Create a list of the given number of customers.
+     *
+     * @param count the number of customers to create
+     * @return a list of customers
+     */
+    public static List<Customer> createCustomers(int count) {
+        List<Customer> customers = new ArrayList<Customer>(count);
+        Date dateJoined = new Date();
+
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer();
+            customer.setId(Long.valueOf(i));
+            customer.setName("Customer " + i);
+            customer.setEmail("customer" + i + "@example.com");
+            customer.setAge(Integer.valueOf(20 + i % 50));
+            customer.setHoldings(Double.valueOf(i * 10.5));
+            customer.setDateJoined(dateJoined);
+            customer.setActive(Boolean.valueOf(i % 2 == 0));
+            customers.add(customer);
+        }
+        return customers;
+    }
+}
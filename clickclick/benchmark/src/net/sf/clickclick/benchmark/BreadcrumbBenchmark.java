@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.clickclick.control.breadcrumb.Breadcrumb;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of {@link Breadcrumb#addTrail(java.lang.String)}. Every
+ * fifth path revisits an earlier path so that trail collapsing is exercised
+ * along with trail eviction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BreadcrumbBenchmark {
+
+    // -------------------------------------------------------------- Variables
+
+    /** The number of paths added to the trail. */
+    @Param({"10", "1000", "100000"})
+    public int rows;
+
+    private String[] paths;
+
+    // --------------------------------------------------------- Public Methods
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        paths = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            int page = (i % 5 == 4) ? i - 2 : i;
+            paths[i] = "/clickclick/section" + (page % 7) + "/page-" + page + ".htm";
+        }
+    }
+
+    @Benchmark
+    public Breadcrumb addTrail() {
+        Breadcrumb breadcrumb = new Breadcrumb("breadcrumb");
+        for (String path : paths) {
+            breadcrumb.addTrail(path);
+        }
+        return breadcrumb;
+    }
+}
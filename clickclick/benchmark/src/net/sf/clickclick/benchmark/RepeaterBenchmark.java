@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.clickclick.control.data.DataCell;
+import net.sf.clickclick.control.html.table.Row;
+import net.sf.clickclick.control.repeater.Repeater;
+import net.sf.clickclick.control.repeater.RepeaterRow;
+import net.sf.clickclick.domain.Customer;
+import org.apache.click.MockContext;
+import org.apache.click.control.ActionLink;
+import org.apache.click.dataprovider.DataProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of building the rows of a {@link Repeater}, which is
+ * triggered by {@link Repeater#setDataProvider(org.apache.click.dataprovider.DataProvider)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RepeaterBenchmark {
+
+    // -------------------------------------------------------------- Variables
+
+    /** The number of items in the repeater. */
+    @Param({"10", "1000", "100000"})
+    public int rows;
+
+    private List<Customer> customers;
+
+    private MockContext context;
+
+    // --------------------------------------------------------- Public Methods
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = MockContext.initContext();
+        customers = BenchmarkSupport.createCustomers(rows);
+    }
+
+    /**
+     * Every Repeater registers a behavior with the request ControlRegistry,
+     * reset the context so registrations don't accumulate across calls.
+     */
+    @Setup(Level.Invocation)
+    public void resetContext() {
+        context.reset();
+    }
+
+    @Benchmark
+    public Repeater buildRows() {
+        Repeater repeater = new Repeater("repeater") {
+
+            public void buildRow(Object item, RepeaterRow row, int index) {
+                Customer customer = (Customer) item;
+
+                Row tableRow = new Row();
+                tableRow.add(new DataCell(customer, "id"));
+                tableRow.add(new DataCell(customer, "name"));
+                tableRow.add(new DataCell(customer, "dateJoined", "{0,date,dd MMM yyyy}"));
+                tableRow.add(new DataCell(customer, "holdings", "{0,number,currency}"));
+                tableRow.add(new ActionLink("edit"));
+                row.add(tableRow);
+            }
+        };
+
+        repeater.setDataProvider(new DataProvider<Customer>() {
+            public List<Customer> getData() {
+                return customers;
+            }
+        });
+        return repeater;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.clickclick.control.paginator.SimplePaginator;
+import org.apache.click.MockContext;
+import org.apache.click.util.HtmlStringBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of rendering a {@link SimplePaginator} positioned in the
+ * middle of the given number of items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SimplePaginatorBenchmark {
+
+    // -------------------------------------------------------------- Variables
+
+    /** The total number of items paginated over. */
+    @Param({"10", "1000", "100000"})
+    public int rows;
+
+    private SimplePaginator paginator;
+
+    // --------------------------------------------------------- Public Methods
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MockContext.initContext();
+
+        paginator = new SimplePaginator("paginator");
+        paginator.setItemsPerPage(10);
+        paginator.setTotalItems(rows);
+
+        // Resolve the current page before moving to the middle page
+        paginator.getCurrentPage();
+        paginator.setCurrentPage(rows / 20);
+    }
+
+    @Benchmark
+    public String render() {
+        HtmlStringBuffer buffer = new HtmlStringBuffer();
+        paginator.render(buffer);
+        return buffer.toString();
+    }
+}
@@ -21,11 +21,11 @@ import net.sf.clickclick.control.html.table.Row;
 import net.sf.clickclick.control.paginator.SimplePaginator;
 import net.sf.clickclick.control.repeater.Repeater;
 import net.sf.clickclick.control.repeater.RepeaterRow;
+import net.sf.clickclick.dataprovider.PrefetchingDataProvider;
+import net.sf.clickclick.dataprovider.RangeDataProvider;
 import net.sf.clickclick.examples.domain.Customer;
 import net.sf.clickclick.examples.page.BorderPage;
 
-import org.apache.click.dataprovider.DataProvider;
-
 /**
  *
  */
@@ -38,7 +38,6 @@ public class PagingRepeaterPage extends BorderPage {
     public void onInit() {
 
         paginator = new SimplePaginator("paginator");
-        paginator.setItemsPerPage(10);
         addControl(paginator);
 
         final HtmlTable table = new HtmlTable("table");
@@ -67,20 +66,30 @@ public class PagingRepeaterPage extends BorderPage {
         };
 
         table.add(repeater);
-        repeater.setDataProvider(new DataProvider() {
 
-            public List getData() {
-                int numberOfCustomers = getCustomerService().getCustomers().size();
+        // Only build rows for the current page of customers, and prefetch
+        // the next and previous pages in the background. Prefetched pages are
+        // cached in the session, which the data provider does not create
+        getContext().getSession();
+        repeater.setMaxItems(10);
+        repeater.setPaginator(paginator);
+        repeater.setDataProvider(new PrefetchingDataProvider("customers", new RangeDataProvider() {
 
-                // Set totalItems in order to call getFirstItem and getLastItem
-                paginator.setTotalItems(numberOfCustomers);
+            public List getData() {
+                return getCustomerService().getCustomers();
+            }
 
-                int start = paginator.getFirstItem();
-                int end = paginator.getLastItem();
+            public List getData(int offset, int limit) {
+                // Return at most limit items, the last page may have fewer
+                List customers = getCustomerService().getCustomers();
+                int size = customers.size();
+                return customers.subList(Math.min(offset, size), Math.min(offset + limit, size));
+            }
 
-                return getCustomerService().getCustomers().subList(start, end);
+            public int size() {
+                return getCustomerService().getCustomers().size();
             }
-        });
+        }));
 
         addControl(table);
     }
@@ -14,6 +14,7 @@
 package net.sf.clickclick.control;
 
 import java.util.List;
+import net.sf.clickclick.util.MessageTable;
 import org.apache.click.control.Select;
 import org.apache.click.extras.control.DateField;
 import org.apache.click.extras.control.IntegerField;
@@ -114,6 +115,21 @@ public class BooleanSelect extends Select {
     /** Indicates the Select Option labels are set to OPEN / CLOSED. */
     public static final String OPENCLOSED = "openclosed";
 
+    /** The built-in notations, in {@link #MESSAGE_NAMES} order. */
+    private static final String[] NOTATIONS = {
+        TRUEFALSE, YESNO, ONOFF, ACTIVEINACTIVE, OPENCLOSED
+    };
+
+    /**
+     * The <tt>true</tt> and <tt>false</tt> message names of the built-in
+     * notations, see {@link MessageTable}.
+     */
+    private static final String[] MESSAGE_NAMES = {
+        "default-true", "default-false", "yesno-true", "yesno-false",
+        "onoff-true", "onoff-false", "activeinactive-true",
+        "activeinactive-false", "openclosed-true", "openclosed-false"
+    };
+
     // -------------------------------------------------------------- Variables
 
     /** Indicates if tri-state is enabled or not, false by default. */
@@ -411,7 +427,7 @@ public class BooleanSelect extends Select {
                 + " set custom option labels when you choose CUSTOM notation.");
             result = customTrue;
         } else {
-            result = getMessage(notation + "-true");
+            result = getNotationMessage(0, "-true");
             if (result == null) throw new RuntimeException("Could not find"
                 + " resource with name: " + notation + "-true");
         }
@@ -444,7 +460,7 @@ public class BooleanSelect extends Select {
                 + " set custom option labels when you choose CUSTOM notation.");
             res = customFalse;
         } else {
-            res = getMessage(notation + "-false");
+            res = getNotationMessage(1, "-false");
             if (res == null) throw new RuntimeException("Could not find"
                 + " resource with name: " + notation + "-false");
         }
@@ -492,4 +508,26 @@ public class BooleanSelect extends Select {
             + " provide a value for the UnsetOptionLabel"); // empty is allowed
         this.customUnset = optionLabel;
     }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Return the <tt>true</tt> or <tt>false</tt> message of the current
+     * notation. Messages of the built-in notations are read from a shared
+     * {@link MessageTable}.
+     *
+     * @param offset 0 for the <tt>true</tt> message, 1 for the <tt>false</tt>
+     * message
+     * @param suffix the message name suffix, <tt>"-true"</tt> or
+     * <tt>"-false"</tt>
+     * @return the message of the current notation, or null if not found
+     */
+    private String getNotationMessage(int offset, String suffix) {
+        for (int i = 0; i < NOTATIONS.length; i++) {
+            if (NOTATIONS[i].equals(notation)) {
+                return MessageTable.getMessage(this, MESSAGE_NAMES, i * 2 + offset);
+            }
+        }
+        return getMessage(notation + suffix);
+    }
 }
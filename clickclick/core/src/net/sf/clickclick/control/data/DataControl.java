@@ -14,13 +14,16 @@
 package net.sf.clickclick.control.data;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import net.sf.clickclick.util.FormatterCache;
+import net.sf.clickclick.util.PropertyAccessor;
 import org.apache.click.Context;
 import org.apache.click.control.AbstractControl;
 import org.apache.click.util.ClickUtils;
 import org.apache.click.util.HtmlStringBuffer;
-import org.apache.click.util.PropertyUtils;
 
 /**
  *
@@ -57,6 +60,15 @@ public class DataControl extends AbstractControl {
     /** The escape HTML characters flag. The default value is true. */
     protected boolean escapeHtml = true;
 
+    /** The locale used to format values with the {@link #format} pattern. */
+    private transient Locale locale;
+
+    /** The property accessor used for the last data source class. */
+    private transient PropertyAccessor accessor;
+
+    /** The resolved Map keys of the last expression. */
+    private transient MapKeys mapKeys;
+
     // ----------------------------------------------------------- Constructors
 
     public DataControl(Object dataSource, String expr, String format) {
@@ -208,10 +220,17 @@ public class DataControl extends AbstractControl {
 
     // ------------------------------------------------------ Protected Methods
 
+    /**
+     * Initialize the locale used to format values. Formatters for the
+     * {@link #getFormat() format} pattern are shared through the
+     * {@link net.sf.clickclick.util.FormatterCache}, unless a
+     * {@link #setMessageFormat(java.text.MessageFormat) MessageFormat} is set.
+     *
+     * @param context the request context
+     */
     protected void initFormatter(Context context) {
         if (getMessageFormat() == null && getFormat() != null) {
-            Locale locale = context.getLocale();
-            setMessageFormat(new MessageFormat(getFormat(), locale));
+            locale = context.getLocale();
         }
     }
 
@@ -247,30 +266,51 @@ public class DataControl extends AbstractControl {
         if (dataSource instanceof Map) {
             Map map = (Map) dataSource;
 
-            Object object = map.get(expr);
-            if (object != null) {
-                return object;
+            // Try the exact, upper case and lower case keys in order
+            String[] keys = getMapKeys(expr).keys;
+            for (int i = 0; i < keys.length; i++) {
+                Object object = map.get(keys[i]);
+                if (object != null) {
+                    return object;
+                }
             }
 
-            String upperCaseName = expr.toUpperCase();
-            object = map.get(upperCaseName);
-            if (object != null) {
-                return object;
-            }
-
-            String lowerCaseName = expr.toLowerCase();
-            object = map.get(lowerCaseName);
-            if (object != null) {
-                return object;
-            }
+            return null;
 
+        } else if (dataSource == null) {
             return null;
 
         } else {
-            return PropertyUtils.getValue(dataSource, expr);
+            // Reuse the accessor while the data source class and expr are the
+            // same, which is the case for every row of a column
+            PropertyAccessor localAccessor = accessor;
+            if (localAccessor == null
+                || localAccessor.getSourceClass() != dataSource.getClass()
+                || !localAccessor.getExpr().equals(expr)) {
+                localAccessor = PropertyAccessor.getAccessor(dataSource.getClass(), expr);
+                accessor = localAccessor;
+            }
+            return localAccessor.getValue(dataSource);
         }
     }
 
+    /**
+     * Return the candidate Map keys of the given expression. The keys are
+     * kept while the expression is the same, which is the case for every row
+     * of a column, so that resolving a Map value does not allocate.
+     *
+     * @param expr the expression to return the Map keys for
+     * @return the candidate Map keys of the given expression
+     */
+    private MapKeys getMapKeys(String expr) {
+        MapKeys localMapKeys = mapKeys;
+        if (localMapKeys == null || !localMapKeys.expr.equals(expr)) {
+            localMapKeys = new MapKeys(expr);
+            mapKeys = localMapKeys;
+        }
+        return localMapKeys;
+    }
+
     protected String format(Object object) {
         if (object == null) {
             return null;
@@ -279,8 +319,46 @@ public class DataControl extends AbstractControl {
         if (getMessageFormat() != null) {
             Object[] args = new Object[] { object };
             return getMessageFormat().format(args);
+        } else if (getFormat() != null) {
+            Locale localLocale = locale == null ? Locale.getDefault() : locale;
+            return FormatterCache.format(getFormat(), localLocale, object);
         } else {
             return object.toString();
         }
     }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides the candidate Map keys of an expression: the expression
+     * itself, and its upper and lower case variants if they differ.
+     */
+    private static class MapKeys {
+
+        /** The expression of the Map keys. */
+        final String expr;
+
+        /** The candidate Map keys, in the order they are tried. */
+        final String[] keys;
+
+        /**
+         * Create the MapKeys of the given expression.
+         *
+         * @param expr the expression to create the Map keys for
+         */
+        MapKeys(String expr) {
+            this.expr = expr;
+            List<String> localKeys = new ArrayList<String>(3);
+            localKeys.add(expr);
+            String upperCase = expr.toUpperCase();
+            if (!localKeys.contains(upperCase)) {
+                localKeys.add(upperCase);
+            }
+            String lowerCase = expr.toLowerCase();
+            if (!localKeys.contains(lowerCase)) {
+                localKeys.add(lowerCase);
+            }
+            keys = localKeys.toArray(new String[localKeys.size()]);
+        }
+    }
 }
@@ -0,0 +1,317 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.control.paginator;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.clickclick.dataprovider.ItemCounter;
+import org.apache.click.Context;
+import org.apache.click.service.LogService;
+import org.apache.click.util.ClickUtils;
+
+/**
+ * Provides a CountStrategy which caches the exact counts by query key for a
+ * time to live.
+ * <p/>
+ * The first request of a query counts its items in the request thread. Later
+ * requests return the cached count. Once the count expired, requests return
+ * the expired count as an estimate while the items are counted again in the
+ * background, so only the first request of a query waits for the count.
+ * <p/>
+ * Background counts run on the given executor, or by default on a single
+ * daemon thread of this strategy. At most one background count runs per key.
+ * A failed background count is logged, and the expired count is returned
+ * until a later count succeeds.
+ * At most 1000 keys are cached, expired keys are removed first when the
+ * cache is full.
+ */
+public class CachedCountStrategy implements CountStrategy {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The maximum number of cached keys. */
+    private static final int MAX_ENTRIES = 1000;
+
+    // -------------------------------------------------------------- Variables
+
+    /** The time in milliseconds a count is cached. */
+    private final long timeToLive;
+
+    /** The executor of the background counts. */
+    private final Executor executor;
+
+    /** The cached counts by key. */
+    private final ConcurrentMap<String, Entry> entries =
+        new ConcurrentHashMap<String, Entry>();
+
+    /** The keys which are counted in the background. */
+    private final ConcurrentMap<String, Boolean> pendingKeys =
+        new ConcurrentHashMap<String, Boolean>();
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create a CachedCountStrategy which caches counts for the given time.
+     *
+     * @param timeToLive the time in milliseconds a count is cached
+     */
+    public CachedCountStrategy(long timeToLive) {
+        this(timeToLive, null);
+    }
+
+    /**
+     * Create a CachedCountStrategy which caches counts for the given time and
+     * runs background counts on the given executor.
+     *
+     * @param timeToLive the time in milliseconds a count is cached
+     * @param executor the executor of the background counts, or null to run
+     * them on a daemon thread of this strategy
+     */
+    public CachedCountStrategy(long timeToLive, Executor executor) {
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("Invalid timeToLive: " + timeToLive);
+        }
+        this.timeToLive = timeToLive;
+        this.executor = executor != null ? executor : createExecutor();
+    }
+
+    // ------------------------------------------------------ Public Properties
+
+    /**
+     * Return the time in milliseconds a count is cached.
+     *
+     * @return the time in milliseconds a count is cached
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return the cached count of the given key. An expired count is returned
+     * as an estimate and counted again in the background. A key which is not
+     * cached is counted by {@link #getMissingItemCount(String, ItemCounter)}.
+     *
+     * @param key the key identifying the query, including its filter values
+     * @param counter the counter of the query items
+     * @return the total number of items, exact or estimated
+     */
+    public ItemCount getItemCount(String key, ItemCounter counter) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null key parameter");
+        }
+        if (counter == null) {
+            throw new IllegalArgumentException("Null counter parameter");
+        }
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return getMissingItemCount(key, counter);
+        }
+        if (entry.isExpired(System.currentTimeMillis(), timeToLive)) {
+            countInBackground(key, counter);
+            return new ItemCount(entry.total, false);
+        }
+        return entry.itemCount;
+    }
+
+    /**
+     * Remove the cached count of the given key, for example after items of
+     * the query were added or removed.
+     *
+     * @param key the key identifying the query
+     */
+    public void remove(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Remove all cached counts.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Return true if the items of the given key are counted in the
+     * background.
+     *
+     * @param key the key identifying the query
+     * @return true if the items of the given key are counted in the background
+     */
+    public boolean isCounting(String key) {
+        return pendingKeys.containsKey(key);
+    }
+
+    // ------------------------------------------------------ Protected Methods
+
+    /**
+     * Return the count of a key which is not cached. This method counts the
+     * items in the request thread.
+     *
+     * @param key the key identifying the query
+     * @param counter the counter of the query items
+     * @return the total number of items, exact or estimated
+     */
+    protected ItemCount getMissingItemCount(String key, ItemCounter counter) {
+        return new ItemCount(count(key, counter), true);
+    }
+
+    /**
+     * Count the items of the given key in the background, unless they are
+     * already counted in the background.
+     *
+     * @param key the key identifying the query
+     * @param counter the counter of the query items
+     */
+    protected final void countInBackground(final String key,
+        final ItemCounter counter) {
+        if (pendingKeys.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+        // The background thread has no Context to look up the log service
+        final LogService logService = getLogService();
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        count(key, counter);
+                    } catch (RuntimeException e) {
+                        // Keep the previous count, count again on the next request
+                        if (logService != null) {
+                            logService.error("Could not count the items of key: "
+                                + key, e);
+                        }
+                    } finally {
+                        pendingKeys.remove(key);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingKeys.remove(key);
+        }
+    }
+
+    /**
+     * Count the items of the given key and cache the count.
+     *
+     * @param key the key identifying the query
+     * @param counter the counter of the query items
+     * @return the exact total number of items
+     */
+    protected final int count(String key, ItemCounter counter) {
+        int total = counter.countItems();
+        if (entries.size() >= MAX_ENTRIES && !entries.containsKey(key)) {
+            removeExpiredEntries();
+        }
+        entries.put(key, new Entry(total, System.currentTimeMillis()));
+        return total;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Remove the expired counts, or all counts if none expired.
+     */
+    private void removeExpiredEntries() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            if (it.next().isExpired(now, timeToLive)) {
+                it.remove();
+            }
+        }
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Return the log service of the current request, or null if there is no
+     * current request.
+     *
+     * @return the log service of the current request, or null
+     */
+    private static LogService getLogService() {
+        if (!Context.hasThreadLocalContext()) {
+            return null;
+        }
+        return ClickUtils.getLogService();
+    }
+
+    /**
+     * Return the default executor of the background counts: a single daemon
+     * thread, which stops when idle.
+     *
+     * @return the default executor of the background counts
+     */
+    private static Executor createExecutor() {
+        return new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SimplePaginator count");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides a cached count.
+     */
+    private static class Entry {
+
+        /** The exact total number of items. */
+        final int total;
+
+        /** The exact count, shared by the requests. */
+        final ItemCount itemCount;
+
+        /** The time the items were counted. */
+        final long time;
+
+        /**
+         * Create a cache entry.
+         *
+         * @param total the exact total number of items
+         * @param time the time the items were counted
+         */
+        Entry(int total, long time) {
+            this.total = total;
+            this.itemCount = new ItemCount(total, true);
+            this.time = time;
+        }
+
+        /**
+         * Return true if the count expired at the given time.
+         *
+         * @param now the current time
+         * @param timeToLive the time in milliseconds a count is cached
+         * @return true if the count expired
+         */
+        boolean isExpired(long now, long timeToLive) {
+            return now - time >= timeToLive;
+        }
+    }
+}
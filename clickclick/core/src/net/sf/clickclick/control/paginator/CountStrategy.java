@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.control.paginator;
+
+import net.sf.clickclick.dataprovider.ItemCounter;
+
+/**
+ * Provides a strategy to count the total items of a paginated query.
+ * <p/>
+ * A strategy instance is usually shared by all requests, for example as a
+ * static field of the Page, so that it can cache counts between requests.
+ * Implementations must be thread-safe.
+ *
+ * @see ExactCountStrategy
+ * @see CachedCountStrategy
+ * @see EstimatedCountStrategy
+ */
+public interface CountStrategy {
+
+    /**
+     * Return the total number of items of the query with the given key.
+     *
+     * @param key the key identifying the query, including its filter values
+     * @param counter the counter of the query items
+     * @return the total number of items, exact or estimated
+     */
+    public ItemCount getItemCount(String key, ItemCounter counter);
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.control.paginator;
+
+import net.sf.clickclick.dataprovider.ItemCounter;
+
+/**
+ * Provides a Paginator which counts its total items through an
+ * {@link ItemCounter} and a {@link CountStrategy}, instead of being set the
+ * total items.
+ * <p/>
+ * The count strategy may return an estimate of the total items, for example
+ * while the exact count runs in the background, see
+ * {@link EstimatedCountStrategy}.
+ */
+public interface CountingPaginator extends Paginator {
+
+    /**
+     * Return the strategy to count the total items, or null if not set.
+     *
+     * @return the strategy to count the total items, or null
+     */
+    public CountStrategy getCountStrategy();
+
+    /**
+     * Return the counter of the total items, or null if not set.
+     *
+     * @return the counter of the total items, or null
+     */
+    public ItemCounter getItemCounter();
+
+    /**
+     * Set the counter of the total items. If set, the total items are
+     * counted through the count strategy instead of being set.
+     *
+     * @param itemCounter the counter of the total items
+     */
+    public void setItemCounter(ItemCounter itemCounter);
+
+    /**
+     * Return the total number of items, counted through the count strategy if
+     * an item counter is set.
+     *
+     * @return the total number of items, exact or estimated
+     */
+    public int getTotalItems();
+
+    /**
+     * Return true if the {@link #getTotalItems() total items} are an estimate
+     * returned by the count strategy.
+     *
+     * @return true if the total items are an estimate
+     */
+    public boolean isTotalItemsEstimated();
+}
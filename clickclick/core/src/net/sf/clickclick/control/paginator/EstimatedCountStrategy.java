@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.control.paginator;
+
+import java.util.concurrent.Executor;
+
+import net.sf.clickclick.dataprovider.ItemCounter;
+
+/**
+ * Provides a CachedCountStrategy which never counts in the request thread if
+ * an estimate is available.
+ * <p/>
+ * The first request of a query returns the
+ * {@link ItemCounter#estimateItems() estimate} of the counter, for example
+ * from the table statistics, while the items are counted exactly in the
+ * background. Later requests return the cached exact count. If the counter
+ * has no estimate, the first request counts the items like
+ * {@link CachedCountStrategy}.
+ */
+public class EstimatedCountStrategy extends CachedCountStrategy {
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create an EstimatedCountStrategy which caches exact counts for the
+     * given time.
+     *
+     * @param timeToLive the time in milliseconds a count is cached
+     */
+    public EstimatedCountStrategy(long timeToLive) {
+        super(timeToLive);
+    }
+
+    /**
+     * Create an EstimatedCountStrategy which caches exact counts for the
+     * given time and runs background counts on the given executor.
+     *
+     * @param timeToLive the time in milliseconds a count is cached
+     * @param executor the executor of the background counts, or null to run
+     * them on a daemon thread of this strategy
+     */
+    public EstimatedCountStrategy(long timeToLive, Executor executor) {
+        super(timeToLive, executor);
+    }
+
+    // ------------------------------------------------------ Protected Methods
+
+    /**
+     * Return the estimate of the counter and count the items in the
+     * background. If the counter has no estimate, the items are counted in
+     * the request thread.
+     *
+     * @param key the key identifying the query
+     * @param counter the counter of the query items
+     * @return the estimated total number of items, or the exact total if
+     * there is no estimate
+     */
+    @Override
+    protected ItemCount getMissingItemCount(String key, ItemCounter counter) {
+        int estimate = counter.estimateItems();
+        if (estimate < 0) {
+            return super.getMissingItemCount(key, counter);
+        }
+        countInBackground(key, counter);
+        return new ItemCount(estimate, false);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.control.paginator;
+
+import net.sf.clickclick.dataprovider.ItemCounter;
+
+/**
+ * Provides a CountStrategy which counts the items exactly on every request,
+ * in the request thread.
+ */
+public class ExactCountStrategy implements CountStrategy {
+
+    /**
+     * Return the exact total number of items, counted by the given counter.
+     *
+     * @param key the key identifying the query, which is not used
+     * @param counter the counter of the query items
+     * @return the exact total number of items
+     */
+    public ItemCount getItemCount(String key, ItemCounter counter) {
+        if (counter == null) {
+            throw new IllegalArgumentException("Null counter parameter");
+        }
+        return new ItemCount(counter.countItems(), true);
+    }
+}
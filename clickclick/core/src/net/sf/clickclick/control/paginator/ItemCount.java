@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.control.paginator;
+
+import java.io.Serializable;
+
+/**
+ * Provides the total number of items of a query, and whether it is exact or
+ * estimated.
+ */
+public final class ItemCount implements Serializable {
+
+    // -------------------------------------------------------------- Constants
+
+    private static final long serialVersionUID = 1L;
+
+    // -------------------------------------------------------------- Variables
+
+    /** The total number of items. */
+    private final int total;
+
+    /** Indicates if the total number of items is exact. */
+    private final boolean exact;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create an ItemCount for the given total number of items.
+     *
+     * @param total the total number of items
+     * @param exact true if the total number of items is exact, false if it is
+     * estimated
+     */
+    public ItemCount(int total, boolean exact) {
+        this.total = Math.max(total, 0);
+        this.exact = exact;
+    }
+
+    // ------------------------------------------------------ Public Properties
+
+    /**
+     * Return the total number of items.
+     *
+     * @return the total number of items
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Return true if the total number of items is exact, false if it is
+     * estimated.
+     *
+     * @return true if the total number of items is exact
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @see Object#toString()
+     *
+     * @return a string representation of the count
+     */
+    @Override
+    public String toString() {
+        return exact ? String.valueOf(total) : "~" + total;
+    }
+}
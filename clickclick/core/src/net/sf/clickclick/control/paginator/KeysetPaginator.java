@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.control.paginator;
+
+/**
+ * Provides a Paginator which can navigate by key instead of by page number,
+ * see {@link net.sf.clickclick.dataprovider.KeysetDataProvider}.
+ * <p/>
+ * In keyset mode the paginator carries the key of an item in its links,
+ * instead of a page number. It renders <tt>first</tt>, <tt>previous</tt> and
+ * <tt>next</tt> links without needing the total number of items.
+ */
+public interface KeysetPaginator extends Paginator {
+
+    /**
+     * Return true if the paginator is in keyset mode.
+     *
+     * @return true if the paginator is in keyset mode
+     */
+    public boolean isKeysetMode();
+
+    /**
+     * Return the key of the item after which the current page starts, or null
+     * if the current page does not start after a key.
+     *
+     * @return the key after which the current page starts, or null
+     */
+    public String getAfterKey();
+
+    /**
+     * Return the key of the item before which the current page ends, or null
+     * if the current page does not end before a key.
+     *
+     * @return the key before which the current page ends, or null
+     */
+    public String getBeforeKey();
+
+    /**
+     * Set the keys of the current page, which are carried by the
+     * <tt>previous</tt> and <tt>next</tt> links.
+     *
+     * @param firstKey the key of the first item of the current page, or null
+     * if the page is empty
+     * @param lastKey the key of the last item of the current page, or null if
+     * the page is empty
+     * @param hasPrevious true if there are items before the current page
+     * @param hasNext true if there are items after the current page
+     */
+    public void setPageKeys(String firstKey, String lastKey, boolean hasPrevious,
+        boolean hasNext);
+}
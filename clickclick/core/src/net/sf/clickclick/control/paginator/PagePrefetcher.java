@@ -0,0 +1,36 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.control.paginator;
+
+/**
+ * Provides a hook to load the items of the pages adjacent to the current
+ * page in the background, so that the next request for them is served from
+ * memory.
+ * <p/>
+ * A paginator invokes the prefetcher after it rendered the current page,
+ * see {@link Paginator#setPagePrefetcher(PagePrefetcher)}.
+ *
+ * @see net.sf.clickclick.dataprovider.PrefetchingDataProvider
+ */
+public interface PagePrefetcher {
+
+    /**
+     * Load the given range of items in the background. This method must not
+     * block the request thread.
+     *
+     * @param offset the index of the first item to load, starting from 0
+     * @param limit the maximum number of items to load
+     */
+    public void prefetch(int offset, int limit);
+}
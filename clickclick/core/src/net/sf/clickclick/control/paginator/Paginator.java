@@ -48,4 +48,21 @@ public interface Paginator extends Renderable {
      * @return the current page value
      */
     public int getCurrentPage();
+
+    /**
+     * Set the prefetcher of the pages adjacent to the current page, or null
+     * to not prefetch pages. The paginator invokes the prefetcher after it
+     * rendered the current page.
+     *
+     * @param pagePrefetcher the prefetcher of the adjacent pages
+     */
+    public void setPagePrefetcher(PagePrefetcher pagePrefetcher);
+
+    /**
+     * Return the prefetcher of the pages adjacent to the current page, or
+     * null if pages are not prefetched.
+     *
+     * @return the prefetcher of the adjacent pages, or null
+     */
+    public PagePrefetcher getPagePrefetcher();
 }
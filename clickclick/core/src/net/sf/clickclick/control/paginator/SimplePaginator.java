@@ -13,7 +13,11 @@
  */
 package net.sf.clickclick.control.paginator;
 
+import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.List;
+import net.sf.clickclick.dataprovider.ItemCounter;
+import net.sf.clickclick.util.MessageTable;
 import org.apache.click.control.AbstractControl;
 import org.apache.click.control.AbstractLink;
 import org.apache.click.control.ActionLink;
@@ -22,6 +26,7 @@ import org.apache.click.element.CssImport;
 import org.apache.click.element.Element;
 import org.apache.click.util.ClickUtils;
 import org.apache.click.util.HtmlStringBuffer;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 
 /**
@@ -38,8 +43,53 @@ import org.apache.commons.lang.math.NumberUtils;
  *  <li>pagination-clean</li>
  *  <li>pagination-flickr</li>
  * </ul>
+ *
+ * <h3>Keyset mode</h3>
+ * In {@link #setKeysetMode(boolean) keyset mode} the paginator links carry
+ * the key of the first or last item of the current page, in the
+ * <tt>"before"</tt> or <tt>"after"</tt> parameter, instead of a page number.
+ * Only the <tt>first</tt>, <tt>previous</tt> and <tt>next</tt> links are
+ * rendered, and the total number of items is not needed. A
+ * {@link net.sf.clickclick.control.repeater.Repeater} with a
+ * {@link net.sf.clickclick.dataprovider.KeysetDataProvider} sets the keys of
+ * the current page through {@link #setPageKeys(String, String, boolean, boolean)}.
+ * <p/>
+ * The keys are URL encoded like any other link parameter, so they may contain
+ * any character. They are visible in the URL however, so they should not
+ * contain confidential information.
+ *
+ * <h3>Count strategies</h3>
+ * Instead of setting the {@link #setTotalItems(int) total items}, an
+ * {@link #setItemCounter(ItemCounter) item counter} and a
+ * {@link #setCountStrategy(CountStrategy) count strategy} can be set. The
+ * strategy counts the items when the paginator needs them, and can cache the
+ * count or return an estimate while the exact count runs in the background:
+ *
+ * <pre class="prettyprint">
+ * private static final CountStrategy COUNT_STRATEGY = new EstimatedCountStrategy(60000);
+ *
+ * public void onInit() {
+ *     paginator.setCountStrategy(COUNT_STRATEGY);
+ *     paginator.setItemCounter(new ItemCounter() {
+ *         public int countItems() {
+ *             return getCustomerService().getNumberOfCustomers();
+ *         }
+ *         public int estimateItems() {
+ *             return getCustomerService().estimateNumberOfCustomers();
+ *         }
+ *     });
+ * } </pre>
+ *
+ * While the count is an estimate, the <tt>last</tt> link is disabled and
+ * "Page N of ~M" is rendered after the links.
+ *
+ * <h3>Prefetching</h3>
+ * If a {@link #setPagePrefetcher(PagePrefetcher) page prefetcher} is set, the
+ * paginator passes the item ranges of the next and previous pages to the
+ * prefetcher after it rendered the current page.
  */
-public class SimplePaginator extends AbstractControl implements Paginator {
+public class SimplePaginator extends AbstractControl
+    implements KeysetPaginator, CountingPaginator {
 
     // -------------------------------------------------------------- Constants
 
@@ -48,6 +98,26 @@ public class SimplePaginator extends AbstractControl implements Paginator {
     /** The control ActionLink page number parameter name: <tt>"page"</tt>. */
     public static final String PAGE = "page";
 
+    /** The control ActionLink keyset mode parameter name: <tt>"after"</tt>. */
+    public static final String AFTER = "after";
+
+    /** The control ActionLink keyset mode parameter name: <tt>"before"</tt>. */
+    public static final String BEFORE = "before";
+
+    /** The names of the paginator messages, see {@link MessageTable}. */
+    private static final String[] MESSAGE_NAMES = {
+        "paginator-first-title", "paginator-first-label",
+        "paginator-last-title", "paginator-last-label",
+        "paginator-next-title", "paginator-next-label",
+        "paginator-previous-title", "paginator-previous-label",
+        "paginator-goto-title", "paginator-estimate-label"
+    };
+
+    /** The markers of the page link values, in {@link PagingLinkTemplate} order. */
+    private static final String[] PAGING_LINK_MARKERS = {
+        "ccpaginatorlabel", "ccpaginatortitle", "ccpaginatorpage"
+    };
+
     // -------------------------------------------------------------- Variables
 
     /** The total number of pages. */
@@ -74,6 +144,48 @@ public class SimplePaginator extends AbstractControl implements Paginator {
 
     private boolean processNextPage = true;
 
+    /** Indicates if the paginator is in keyset mode, false by default. */
+    private boolean keysetMode;
+
+    /** The requested key after which the current page starts. */
+    private String afterKey;
+
+    /** The requested key before which the current page ends. */
+    private String beforeKey;
+
+    /** The key of the first item of the current page. */
+    private String firstKey;
+
+    /** The key of the last item of the current page. */
+    private String lastKey;
+
+    /** Indicates if there are items before the current page. */
+    private boolean hasPrevious;
+
+    /** Indicates if there are items after the current page. */
+    private boolean hasNext;
+
+    /** The strategy to count the total items, or null. */
+    private transient CountStrategy countStrategy;
+
+    /** The counter of the total items, or null if total items are set. */
+    private transient ItemCounter itemCounter;
+
+    /**
+     * The key identifying the counted query, or null to use the resource path
+     * and name.
+     */
+    private String countKey;
+
+    /** The total items counted for the current request, or null if not counted. */
+    private transient ItemCount itemCount;
+
+    /** The prefetcher of the adjacent pages, or null. */
+    private transient PagePrefetcher pagePrefetcher;
+
+    /** The page link template of the current request, or null if not created. */
+    private transient PagingLinkTemplate pagingLinkTemplate;
+
     // ----------------------------------------------------------- Constructors
 
     /**
@@ -104,7 +216,7 @@ public class SimplePaginator extends AbstractControl implements Paginator {
      * @return the title of the first page link
      */
     public String getFirstTitleMessage() {
-        return getMessage("paginator-first-title");
+        return MessageTable.getMessage(this, MESSAGE_NAMES, 0);
     }
 
     /**
@@ -116,7 +228,7 @@ public class SimplePaginator extends AbstractControl implements Paginator {
      * @return the label of the first page link
      */
     public String getFirstLabelMessage() {
-        return getMessage("paginator-first-label");
+        return MessageTable.getMessage(this, MESSAGE_NAMES, 1);
     }
 
     /**
@@ -128,7 +240,7 @@ public class SimplePaginator extends AbstractControl implements Paginator {
      * @return the title of the last page link
      */
     public String getLastTitleMessage() {
-        return getMessage("paginator-last-title");
+        return MessageTable.getMessage(this, MESSAGE_NAMES, 2);
     }
 
     /**
@@ -140,7 +252,7 @@ public class SimplePaginator extends AbstractControl implements Paginator {
      * @return the label of the last page link
      */
     public String getLastLabelMessage() {
-        return getMessage("paginator-last-label");
+        return MessageTable.getMessage(this, MESSAGE_NAMES, 3);
     }
 
     /**
@@ -152,7 +264,7 @@ public class SimplePaginator extends AbstractControl implements Paginator {
      * @return the title of the next page link
      */
     public String getNextTitleMessage() {
-        return getMessage("paginator-next-title");
+        return MessageTable.getMessage(this, MESSAGE_NAMES, 4);
     }
 
     /**
@@ -164,7 +276,7 @@ public class SimplePaginator extends AbstractControl implements Paginator {
      * @return the label of the next page link
      */
     public String getNextLabelMessage() {
-        return getMessage("paginator-next-label");
+        return MessageTable.getMessage(this, MESSAGE_NAMES, 5);
     }
 
     /**
@@ -176,7 +288,7 @@ public class SimplePaginator extends AbstractControl implements Paginator {
      * @return the title of the previous page link
      */
     public String getPreviousTitleMessage() {
-        return getMessage("paginator-previous-title");
+        return MessageTable.getMessage(this, MESSAGE_NAMES, 6);
     }
 
     /**
@@ -188,7 +300,7 @@ public class SimplePaginator extends AbstractControl implements Paginator {
      * @return the label of the previous page link
      */
     public String getPreviousLabelMessage() {
-        return getMessage("paginator-previous-label");
+        return MessageTable.getMessage(this, MESSAGE_NAMES, 7);
     }
 
     /**
@@ -200,7 +312,21 @@ public class SimplePaginator extends AbstractControl implements Paginator {
      * @return the title of the page link
      */
     public String getGotoPageTitleMessage() {
-        return getMessage("paginator-goto-title");
+        return MessageTable.getMessage(this, MESSAGE_NAMES, 8);
+    }
+
+    /**
+     * Return the label rendered while the total items are estimated, with
+     * the current page number as argument <tt>{0}</tt> and the estimated
+     * total number of pages as argument <tt>{1}</tt>.
+     * <p/>
+     * The label can be localized through the message
+     * <tt>"paginator-estimate-label"</tt>.
+     *
+     * @return the label rendered while the total items are estimated
+     */
+    public String getEstimateLabelMessage() {
+        return MessageTable.getMessage(this, MESSAGE_NAMES, 9);
     }
 
     /**
@@ -210,6 +336,7 @@ public class SimplePaginator extends AbstractControl implements Paginator {
      */
     public void setControlLink(ActionLink controlLink) {
         this.controlLink = controlLink;
+        this.pagingLinkTemplate = null;
     }
 
     /**
@@ -270,6 +397,62 @@ public class SimplePaginator extends AbstractControl implements Paginator {
         return currentPage;
     }
 
+    /**
+     * Return true if the paginator is in keyset mode.
+     *
+     * @see KeysetPaginator#isKeysetMode()
+     *
+     * @return true if the paginator is in keyset mode
+     */
+    public boolean isKeysetMode() {
+        return keysetMode;
+    }
+
+    /**
+     * Set whether the paginator is in keyset mode.
+     *
+     * @param keysetMode true to navigate by key instead of by page number
+     */
+    public void setKeysetMode(boolean keysetMode) {
+        this.keysetMode = keysetMode;
+    }
+
+    /**
+     * @see KeysetPaginator#getAfterKey()
+     *
+     * @return the key after which the current page starts, or null
+     */
+    public String getAfterKey() {
+        getCurrentPage();
+        return afterKey;
+    }
+
+    /**
+     * @see KeysetPaginator#getBeforeKey()
+     *
+     * @return the key before which the current page ends, or null
+     */
+    public String getBeforeKey() {
+        getCurrentPage();
+        return beforeKey;
+    }
+
+    /**
+     * @see KeysetPaginator#setPageKeys(String, String, boolean, boolean)
+     *
+     * @param firstKey the key of the first item of the current page, or null
+     * @param lastKey the key of the last item of the current page, or null
+     * @param hasPrevious true if there are items before the current page
+     * @param hasNext true if there are items after the current page
+     */
+    public void setPageKeys(String firstKey, String lastKey, boolean hasPrevious,
+        boolean hasNext) {
+        this.firstKey = firstKey;
+        this.lastKey = lastKey;
+        this.hasPrevious = hasPrevious;
+        this.hasNext = hasNext;
+    }
+
     /**
      * Return the total number of pages.
      *
@@ -280,12 +463,126 @@ public class SimplePaginator extends AbstractControl implements Paginator {
     }
 
     /**
+     * Return the total number of items. If an
+     * {@link #setItemCounter(ItemCounter) item counter} is set, the items are
+     * counted through the {@link #setCountStrategy(CountStrategy) count strategy}
+     * once per request, and the count may be an estimate.
+     *
+     * @see CountingPaginator#getTotalItems()
+     *
      * @return the totalItems
      */
     public int getTotalItems() {
+        ItemCount count = getItemCount();
+        if (count != null) {
+            return count.getTotal();
+        }
         return totalItems;
     }
 
+    /**
+     * Return true if the {@link #getTotalItems() total items} are an estimate
+     * returned by the count strategy.
+     *
+     * @see CountingPaginator#isTotalItemsEstimated()
+     *
+     * @return true if the total items are an estimate
+     */
+    public boolean isTotalItemsEstimated() {
+        ItemCount count = getItemCount();
+        return count != null && !count.isExact();
+    }
+
+    /**
+     * @see Paginator#getPagePrefetcher()
+     *
+     * @return the prefetcher of the adjacent pages, or null
+     */
+    public PagePrefetcher getPagePrefetcher() {
+        return pagePrefetcher;
+    }
+
+    /**
+     * @see Paginator#setPagePrefetcher(PagePrefetcher)
+     *
+     * @param pagePrefetcher the prefetcher of the adjacent pages
+     */
+    public void setPagePrefetcher(PagePrefetcher pagePrefetcher) {
+        this.pagePrefetcher = pagePrefetcher;
+    }
+
+    /**
+     * @see CountingPaginator#getCountStrategy()
+     *
+     * @return the strategy to count the total items, or null
+     */
+    public CountStrategy getCountStrategy() {
+        return countStrategy;
+    }
+
+    /**
+     * Set the strategy to count the total items. If an
+     * {@link #setItemCounter(ItemCounter) item counter} is set without a
+     * strategy, the items are counted exactly on every request.
+     *
+     * @param countStrategy the strategy to count the total items
+     */
+    public void setCountStrategy(CountStrategy countStrategy) {
+        this.countStrategy = countStrategy;
+        this.itemCount = null;
+    }
+
+    /**
+     * @see CountingPaginator#getItemCounter()
+     *
+     * @return the counter of the total items, or null
+     */
+    public ItemCounter getItemCounter() {
+        return itemCounter;
+    }
+
+    /**
+     * Set the counter of the total items. If set, the
+     * {@link #setTotalItems(int) total items} are ignored.
+     *
+     * @see CountingPaginator#setItemCounter(ItemCounter)
+     *
+     * @param itemCounter the counter of the total items
+     */
+    public void setItemCounter(ItemCounter itemCounter) {
+        this.itemCounter = itemCounter;
+        this.itemCount = null;
+    }
+
+    /**
+     * Return the key identifying the counted query to the count strategy.
+     * Defaults to the {@link org.apache.click.Context#getResourcePath() resource path}
+     * of the request and the paginator name, for example
+     * <tt>"/customers.htm#paginator"</tt>, so paginators of the same name on
+     * different pages do not share their count.
+     *
+     * @return the key identifying the counted query
+     */
+    public String getCountKey() {
+        if (countKey == null) {
+            return getContext().getResourcePath() + "#" + getName();
+        }
+        return countKey;
+    }
+
+    /**
+     * Set the key identifying the counted query to the count strategy. The
+     * key must include the filter values of the query, so that a cached count
+     * is not shared by different filters. It must also be unique across the
+     * pages sharing the count strategy.
+     *
+     * @param countKey the key identifying the counted query
+     */
+    public void setCountKey(String countKey) {
+        this.countKey = countKey;
+        this.itemCount = null;
+    }
+
     /**
      * @param totalItems the totalItems to set
      */
@@ -385,11 +682,15 @@ public class SimplePaginator extends AbstractControl implements Paginator {
         ActionLink controlLink = getControlLink();
         ClickUtils.bind(controlLink);
 
+        afterKey = null;
+        beforeKey = null;
         if (controlLink.isClicked()) {
             String page = getContext().getRequestParameter(PAGE);
             if (NumberUtils.isNumber(page)) {
                 nextPage = Integer.parseInt(page);
             }
+            afterKey = StringUtils.trimToNull(getContext().getRequestParameter(AFTER));
+            beforeKey = StringUtils.trimToNull(getContext().getRequestParameter(BEFORE));
         }
         return nextPage;
     }
@@ -397,6 +698,12 @@ public class SimplePaginator extends AbstractControl implements Paginator {
     @Override
     public void onDestroy() {
         processNextPage = true;
+        afterKey = null;
+        beforeKey = null;
+        pagingLinkTemplate = null;
+        setPageKeys(null, null, false, false);
+        itemCount = null;
+        setPageTotal(0);
     }
 
     // --------------------------------------------------------- Public Methods
@@ -408,6 +715,11 @@ public class SimplePaginator extends AbstractControl implements Paginator {
      */
     @Override
     public void render(HtmlStringBuffer buffer) {
+        if (isKeysetMode()) {
+            renderKeyset(buffer);
+            return;
+        }
+
         calcPageTotal(getItemsPerPage(), getTotalItems());
 
         // If there are no pages to render, exit early
@@ -443,7 +755,16 @@ public class SimplePaginator extends AbstractControl implements Paginator {
         buffer.append("\n");
         renderLast(buffer);
         buffer.append("\n");
+        if (isTotalItemsEstimated()) {
+            renderEstimate(buffer);
+            buffer.append("\n");
+        }
         buffer.elementEnd("ul");
+
+        if (getPagePrefetcher() != null) {
+            prefetchPage(getCurrentPage() + 1);
+            prefetchPage(getCurrentPage() - 1);
+        }
     }
 
     /**
@@ -480,6 +801,10 @@ public class SimplePaginator extends AbstractControl implements Paginator {
 
     /**
      * Render the page link for the given page number.
+     * <p/>
+     * The {@link #getControlLink() control link} is rendered once per request
+     * into a template, and every page link is rendered by appending the
+     * template fragments and the page number.
      *
      * @param buffer the buffer to render to
      * @param pageNumber the page number of the page link to render
@@ -488,17 +813,59 @@ public class SimplePaginator extends AbstractControl implements Paginator {
         if (pageNumber - 1 == getCurrentPage()) {
             buffer.append(pageNumber);
         } else {
-            AbstractLink controlLink = getControlLink();
-            controlLink.setLabel(String.valueOf(pageNumber));
-
+            if (pagingLinkTemplate == null) {
+                pagingLinkTemplate = createPagingLinkTemplate();
+            }
             // Cater for zero based indexing and subtract 1 from pageNumber
-            controlLink.setParameter(Table.PAGE, String.valueOf(pageNumber - 1));
-            controlLink.setTitle(getGotoPageTitleMessage()
-                + " " + pageNumber);
-            controlLink.render(buffer);
+            pagingLinkTemplate.render(buffer, pageNumber, pageNumber - 1);
         }
     }
 
+    /**
+     * Create the page link template of the current request, by rendering the
+     * {@link #getControlLink() control link} with markers in place of the
+     * label, the page number of the title and the page parameter value.
+     * The state of the control link is restored afterwards.
+     *
+     * @return the page link template of the current request
+     */
+    private PagingLinkTemplate createPagingLinkTemplate() {
+        AbstractLink controlLink = getControlLink();
+        String label = controlLink.getLabel();
+        String title = controlLink.getTitle();
+        String page = controlLink.getParameter(Table.PAGE);
+
+        controlLink.setLabel(PAGING_LINK_MARKERS[0]);
+        controlLink.setTitle(getGotoPageTitleMessage() + " "
+            + PAGING_LINK_MARKERS[1]);
+        controlLink.setParameter(Table.PAGE, PAGING_LINK_MARKERS[2]);
+
+        HtmlStringBuffer buffer = new HtmlStringBuffer();
+        controlLink.render(buffer);
+
+        controlLink.setLabel(label);
+        controlLink.setTitle(title);
+        controlLink.setParameter(Table.PAGE, page);
+
+        return new PagingLinkTemplate(buffer.toString());
+    }
+
+    /**
+     * Render the current page number and the estimated total number of
+     * pages, while the total items are estimated.
+     *
+     * @param buffer the buffer to render to
+     */
+    protected void renderEstimate(HtmlStringBuffer buffer) {
+        buffer.elementStart("li");
+        buffer.appendAttribute("class", "estimate");
+        buffer.closeTag();
+        buffer.append(MessageFormat.format(getEstimateLabelMessage(),
+            new Object[] { String.valueOf(getCurrentPage() + 1),
+                String.valueOf(getPageTotal()) }));
+        buffer.elementEnd("li");
+    }
+
     /**
      * Render a separator between page links.
      *
@@ -571,7 +938,7 @@ public class SimplePaginator extends AbstractControl implements Paginator {
     protected void renderLast(HtmlStringBuffer buffer) {
         buffer.elementStart("li");
         String pageValue = String.valueOf(getPageTotal() - 1);
-        if (getCurrentPage() < getPageTotal() - 1) {
+        if (getCurrentPage() < getPageTotal() - 1 && !isTotalItemsEstimated()) {
             buffer.appendAttribute("class", "last");
             buffer.closeTag();
 
@@ -617,6 +984,109 @@ public class SimplePaginator extends AbstractControl implements Paginator {
         buffer.elementEnd("li");
     }
 
+    /**
+     * Render the paginator in keyset mode: the <tt>first</tt>,
+     * <tt>previous</tt> and <tt>next</tt> links.
+     *
+     * @param buffer the buffer to render to
+     */
+    protected void renderKeyset(HtmlStringBuffer buffer) {
+        buffer.elementStart("ul");
+        String styleClass = getAttribute("class");
+        if (styleClass != null) {
+            buffer.appendAttribute("class", styleClass);
+        }
+        buffer.closeTag();
+        buffer.append("\n");
+
+        renderKeysetLink(buffer, "first", hasPrevious, getFirstLabelMessage(),
+            getFirstTitleMessage(), null, null);
+        buffer.append("\n");
+        renderKeysetLink(buffer, "previous", hasPrevious && firstKey != null,
+            getPreviousLabelMessage(), getPreviousTitleMessage(), BEFORE, firstKey);
+        buffer.append("\n");
+        renderKeysetLink(buffer, "next", hasNext && lastKey != null,
+            getNextLabelMessage(), getNextTitleMessage(), AFTER, lastKey);
+        buffer.append("\n");
+        buffer.elementEnd("ul");
+    }
+
+    /**
+     * Render a keyset mode paginator link. The key is URL encoded by the
+     * {@link #getControlLink() control link}, and the state of the control
+     * link is restored afterwards.
+     *
+     * @param buffer the buffer to render to
+     * @param styleClass the style class of the link container, suffixed with
+     * <tt>"-off"</tt> if the link is disabled
+     * @param enabled true if the link is enabled
+     * @param label the link label
+     * @param title the link title
+     * @param keyParameter the name of the key parameter, or null
+     * @param key the key parameter value
+     */
+    protected void renderKeysetLink(HtmlStringBuffer buffer, String styleClass,
+        boolean enabled, String label, String title, String keyParameter,
+        String key) {
+        buffer.elementStart("li");
+        if (enabled) {
+            buffer.appendAttribute("class", styleClass);
+            buffer.closeTag();
+
+            AbstractLink controlLink = getControlLink();
+            String linkLabel = controlLink.getLabel();
+            String linkTitle = controlLink.getTitle();
+            String page = controlLink.getParameter(Table.PAGE);
+            String after = controlLink.getParameter(AFTER);
+            String before = controlLink.getParameter(BEFORE);
+
+            controlLink.setLabel(label);
+            controlLink.setTitle(title);
+            controlLink.setParameter(Table.PAGE, null);
+            controlLink.setParameter(AFTER, null);
+            controlLink.setParameter(BEFORE, null);
+            if (keyParameter != null) {
+                controlLink.setParameter(keyParameter, key);
+            }
+            controlLink.render(buffer);
+
+            controlLink.setLabel(linkLabel);
+            controlLink.setTitle(linkTitle);
+            controlLink.setParameter(Table.PAGE, page);
+            controlLink.setParameter(AFTER, after);
+            controlLink.setParameter(BEFORE, before);
+        } else {
+            buffer.appendAttribute("class", styleClass + "-off");
+            buffer.closeTag();
+
+            buffer.append(label);
+        }
+        buffer.elementEnd("li");
+    }
+
+    /**
+     * Pass the item range of the given page to the
+     * {@link #setPagePrefetcher(PagePrefetcher) page prefetcher}, if the page
+     * exists.
+     *
+     * @param page the page to prefetch, starting from 0
+     */
+    protected void prefetchPage(int page) {
+        int itemsPerPage = getItemsPerPage();
+        if (page < 0 || page >= getPageTotal() || itemsPerPage <= 0) {
+            return;
+        }
+        int offset = page * itemsPerPage;
+        int limit = itemsPerPage;
+        if (!isTotalItemsEstimated()) {
+            // The last page has fewer items, as fetched by a Repeater
+            limit = Math.min(itemsPerPage, getTotalItems() - offset);
+        }
+        if (limit > 0) {
+            getPagePrefetcher().prefetch(offset, limit);
+        }
+    }
+
     /**
      * Calculate the {@link #lowerBound} and {@link #upperBound} values.
      */
@@ -631,6 +1101,26 @@ public class SimplePaginator extends AbstractControl implements Paginator {
 
     // Private Methods --------------------------------------------------------
 
+    /**
+     * Return the total items counted for the current request, or null if no
+     * item counter is set.
+     *
+     * @return the total items counted for the current request, or null
+     */
+    private ItemCount getItemCount() {
+        if (itemCounter == null) {
+            return null;
+        }
+        if (itemCount == null) {
+            CountStrategy strategy = countStrategy;
+            if (strategy == null) {
+                strategy = new ExactCountStrategy();
+            }
+            itemCount = strategy.getItemCount(getCountKey(), itemCounter);
+        }
+        return itemCount;
+    }
+
     /**
      * Set the total number of pages.
      *
@@ -663,4 +1153,76 @@ public class SimplePaginator extends AbstractControl implements Paginator {
 
         setPageTotal((int) Math.ceil(value));
     }
+
+    // Inner Classes ----------------------------------------------------------
+
+    /**
+     * Provides a rendered page link, split into the fragments around the
+     * label, the page number of the title and the page parameter value.
+     */
+    private static class PagingLinkTemplate {
+
+        /** The fragments between the values. */
+        private final String[] fragments;
+
+        /** The value index following each fragment, or -1 after the last. */
+        private final int[] valueIndexes;
+
+        /**
+         * Create a PagingLinkTemplate from the given link, rendered with the
+         * {@link SimplePaginator#PAGING_LINK_MARKERS markers} as values.
+         *
+         * @param renderedLink the rendered link
+         */
+        PagingLinkTemplate(String renderedLink) {
+            List<String> fragmentList = new ArrayList<String>();
+            List<Integer> indexList = new ArrayList<Integer>();
+
+            int start = 0;
+            while (true) {
+                int markerIndex = -1;
+                int markerStart = -1;
+                for (int i = 0; i < PAGING_LINK_MARKERS.length; i++) {
+                    int index = renderedLink.indexOf(PAGING_LINK_MARKERS[i], start);
+                    if (index >= 0 && (markerStart < 0 || index < markerStart)) {
+                        markerStart = index;
+                        markerIndex = i;
+                    }
+                }
+                if (markerIndex < 0) {
+                    fragmentList.add(renderedLink.substring(start));
+                    indexList.add(Integer.valueOf(-1));
+                    break;
+                }
+                fragmentList.add(renderedLink.substring(start, markerStart));
+                indexList.add(Integer.valueOf(markerIndex));
+                start = markerStart + PAGING_LINK_MARKERS[markerIndex].length();
+            }
+
+            fragments = fragmentList.toArray(new String[fragmentList.size()]);
+            valueIndexes = new int[indexList.size()];
+            for (int i = 0; i < valueIndexes.length; i++) {
+                valueIndexes[i] = indexList.get(i).intValue();
+            }
+        }
+
+        /**
+         * Render the page link of the given page number.
+         *
+         * @param buffer the buffer to render to
+         * @param pageNumber the page number, used as label and in the title
+         * @param pageValue the page parameter value
+         */
+        void render(HtmlStringBuffer buffer, int pageNumber, int pageValue) {
+            for (int i = 0; i < fragments.length; i++) {
+                buffer.append(fragments[i]);
+                int valueIndex = valueIndexes[i];
+                if (valueIndex == 2) {
+                    buffer.append(pageValue);
+                } else if (valueIndex >= 0) {
+                    buffer.append(pageNumber);
+                }
+            }
+        }
+    }
 }
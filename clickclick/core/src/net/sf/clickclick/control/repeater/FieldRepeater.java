@@ -14,10 +14,8 @@
 package net.sf.clickclick.control.repeater;
 
 import java.util.List;
-import org.apache.click.control.Container;
 
 import org.apache.click.control.Field;
-import org.apache.click.util.ContainerUtils;
 
 /**
  * Provides a Repeater that displays a {@link org.apache.click.control.Field}
@@ -148,12 +146,12 @@ public abstract class FieldRepeater extends Repeater {
         if (items == null) {
             throw new IllegalStateException("Items cannot be null.");
         }
-        int index = items.indexOf(item);
+        int index = indexOfItem(item);
 
-        Container container = (Container) getControls().get(index);
+        RepeaterRow row = (RepeaterRow) getControls().get(index);
 
         // Find the first Field in the repeater
-        Field field = (Field) ContainerUtils.findControlByName(container, getFieldName());
+        Field field = (Field) findControlByName(row, getFieldName());
 
         if (field == null) {
             return;
@@ -185,11 +183,11 @@ public abstract class FieldRepeater extends Repeater {
         if (items == null) {
             throw new IllegalStateException("Items cannot be null.");
         }
-        int index = items.indexOf(item);
-        Container container = (Container) getControls().get(index);
+        int index = indexOfItem(item);
+        RepeaterRow row = (RepeaterRow) getControls().get(index);
 
         // Find the first Field in the repeater
-        Field field = (Field) ContainerUtils.findControlByName(container, getFieldName());
+        Field field = (Field) findControlByName(row, getFieldName());
 
         if (field == null) {
             return;
@@ -13,8 +13,22 @@
  */
 package net.sf.clickclick.control.repeater;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+
+import net.sf.clickclick.control.paginator.KeysetPaginator;
+import net.sf.clickclick.control.paginator.PagePrefetcher;
+import net.sf.clickclick.control.paginator.Paginator;
+import net.sf.clickclick.control.paginator.CountingPaginator;
+import net.sf.clickclick.dataprovider.ItemCounter;
+import net.sf.clickclick.dataprovider.KeysetDataProvider;
+import net.sf.clickclick.dataprovider.RangeDataProvider;
 
 import org.apache.click.Behavior;
 import org.apache.click.Context;
@@ -25,10 +39,15 @@ import org.apache.click.control.AbstractLink;
 import org.apache.click.control.Container;
 import org.apache.click.control.Field;
 import org.apache.click.control.FieldSet;
+import org.apache.click.control.Form;
+import org.apache.click.control.HiddenField;
 import org.apache.click.control.Panel;
 import org.apache.click.dataprovider.DataProvider;
 import org.apache.click.util.ContainerUtils;
 import org.apache.click.util.HtmlStringBuffer;
+import org.apache.click.util.PropertyUtils;
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.math.NumberUtils;
 
 /**
  * Provides a Repeater control for displaying a list of items. For every item in
@@ -110,6 +129,56 @@ import org.apache.click.util.HtmlStringBuffer;
  * <pre class="prettyprint">
  * &lt;input type="text" name="name_0" id="name_0" ... /&gt;
  * &lt;input type="text" name="name_1" id="name_1" ... /&gt;</pre>
+ *
+ * By default the index is added to control names when rows are built and
+ * before the response is rendered, and removed again after the Repeater is
+ * processed. Each pass walks all rows.
+ * <p/>
+ * With {@link #setIndexedNaming(boolean) indexed naming} enabled, each
+ * {@link RepeaterRow} carries its index and the indexed names of its controls
+ * are computed once when the row is built. Controls keep their indexed names
+ * for the whole request and are only renamed when the index of their row
+ * changes. Note that in this mode action listeners see the indexed control
+ * names, for example <tt>"name_0"</tt>.
+ *
+ * <h3>Windowed rendering</h3>
+ *
+ * By default a RepeaterRow is built for every item returned by the
+ * {@link #setDataProvider(org.apache.click.dataprovider.DataProvider) data provider}.
+ * To only build rows for a window of items, set the
+ * {@link #setFirstItem(int) first item} and {@link #setMaxItems(int) maximum items},
+ * or set a {@link #setPaginator(net.sf.clickclick.control.paginator.Paginator) paginator}.
+ * Only the items in the window are held in the {@link #items} list and row
+ * indexes are relative to the window, so the window must be the same when the
+ * Repeater is rendered and when its rows are posted back. If the Repeater is
+ * inside a {@link org.apache.click.control.Form}, a hidden field named
+ * <tt>"&lt;repeater name&gt;_firstItem"</tt> is added to the form, which posts
+ * the first item of the rendered window, and a paginator is set to the page
+ * of the posted window. With a paginator in keyset mode, the hidden field
+ * <tt>"&lt;repeater name&gt;_pageKey"</tt> posts the key the rendered page
+ * was requested with instead.
+ * <p/>
+ * If the data provider is a {@link net.sf.clickclick.dataprovider.RangeDataProvider},
+ * only the items in the window are fetched from it.
+ * <p/>
+ * For example:
+ *
+ * <pre class="prettyprint">
+ * paginator = new SimplePaginator("paginator");
+ * addControl(paginator);
+ *
+ * repeater.setMaxItems(10);
+ * repeater.setPaginator(paginator);
+ * repeater.setDataProvider(dataProvider); </pre>
+ *
+ * <h3>Item lookup</h3>
+ *
+ * Methods such as {@link #removeItem(java.lang.Object)} and
+ * {@link #copyTo(java.lang.Object)} must find the row of a given item. The
+ * Repeater keeps an index from item to row position which is based on item
+ * identity. If items are recreated between requests, for example when loaded
+ * from a database, set an {@link #setItemKey(java.lang.String) item key} so
+ * that items are matched on a unique property such as <tt>"id"</tt> instead.
  */
 public abstract class Repeater extends AbstractContainer {
 
@@ -117,6 +186,12 @@ public abstract class Repeater extends AbstractContainer {
 
     private static final long serialVersionUID = 1L;
 
+    /** The posted page key prefix of a page following a key. */
+    private static final String AFTER_KEY_PREFIX = "after:";
+
+    /** The posted page key prefix of a page preceding a key. */
+    private static final String BEFORE_KEY_PREFIX = "before:";
+
     // -------------------------------------------------------------- Variables
 
     /** The list of items to be rendered. */
@@ -128,6 +203,52 @@ public abstract class Repeater extends AbstractContainer {
 
     private Behavior behavior;
 
+    /** The index of the first data provider item to build a row for. */
+    private int firstItem = 0;
+
+    /** The index of the first item of the current window. */
+    private int windowFirstItem = 0;
+
+    /** The hidden field posting the first item of the window, or null. */
+    private HiddenField firstItemField;
+
+    /**
+     * The requested key of the current keyset page, prefixed with
+     * <tt>"after:"</tt> or <tt>"before:"</tt>, or an empty string for the
+     * first page.
+     */
+    private String windowPageKey = "";
+
+    /** The hidden field posting the key of the keyset page, or null. */
+    private HiddenField pageKeyField;
+
+    /**
+     * The item counter this Repeater set on the paginator for the
+     * {@link #countedDataProvider}, or null.
+     */
+    private transient ItemCounter defaultItemCounter;
+
+    /** The data provider counted by the {@link #defaultItemCounter}. */
+    private transient RangeDataProvider countedDataProvider;
+
+    /** The maximum number of rows to build, 0 means no maximum. */
+    private int maxItems = 0;
+
+    /** The paginator which current page determines the first item. */
+    private Paginator paginator;
+
+    /** Indicates if rows carry precomputed indexed control names. */
+    private boolean indexedNaming = false;
+
+    /** The item property used to index items, or null to index by identity. */
+    private String itemKey;
+
+    /** Maps each item (or item key) to the position of its row. */
+    private Map<Object, ItemPosition> itemIndexMap;
+
+    /** The item positions in the order of the {@link #items} list. */
+    private List<ItemPosition> itemPositions;
+
     // Constructors -----------------------------------------------------------
 
     /**
@@ -163,6 +284,142 @@ public abstract class Repeater extends AbstractContainer {
     // Consolodate setItems with setDataProvider
     void setItems(List items) {
         this.items = items;
+        invalidateItemIndex();
+    }
+
+    /**
+     * Return the index of the first data provider item to build a row for.
+     * Index starts from 0.
+     * <p/>
+     * If a {@link #setPaginator(net.sf.clickclick.control.paginator.Paginator) paginator}
+     * and {@link #setMaxItems(int) maximum items} are set, this property is
+     * ignored and the window starts at the paginator current page.
+     *
+     * @return the index of the first data provider item to build a row for
+     */
+    public int getFirstItem() {
+        return firstItem;
+    }
+
+    /**
+     * Set the index of the first data provider item to build a row for. The
+     * default value is 0.
+     * <p/>
+     * This property must be set before the
+     * {@link #setDataProvider(org.apache.click.dataprovider.DataProvider) data provider}.
+     *
+     * @param firstItem the index of the first data provider item to build a
+     * row for
+     */
+    public void setFirstItem(int firstItem) {
+        if (firstItem < 0) {
+            throw new IllegalArgumentException("First item cannot be negative: "
+                + firstItem);
+        }
+        this.firstItem = firstItem;
+    }
+
+    /**
+     * Return the maximum number of rows to build. A value of 0 means rows are
+     * built for all items.
+     *
+     * @return the maximum number of rows to build
+     */
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * Set the maximum number of rows to build. A value of 0 means rows are
+     * built for all items, which is the default.
+     * <p/>
+     * This property must be set before the
+     * {@link #setDataProvider(org.apache.click.dataprovider.DataProvider) data provider}.
+     *
+     * @param maxItems the maximum number of rows to build
+     */
+    public void setMaxItems(int maxItems) {
+        if (maxItems < 0) {
+            throw new IllegalArgumentException("Max items cannot be negative: "
+                + maxItems);
+        }
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * Return the paginator which determines the window of items to build rows
+     * for.
+     *
+     * @return the paginator which determines the window of items
+     */
+    public Paginator getPaginator() {
+        return paginator;
+    }
+
+    /**
+     * Set the paginator which determines the window of items to build rows
+     * for.
+     * <p/>
+     * When rows are built, the paginator {@link Paginator#setItemsPerPage(int) items per page}
+     * is set to the {@link #setMaxItems(int) maximum items}, its
+     * {@link Paginator#setTotalItems(int) total items} is set to the number
+     * of data provider items, and the window starts at its
+     * {@link Paginator#getCurrentPage() current page}. The paginator is
+     * ignored if no maximum items are set.
+     * <p/>
+     * This property must be set before the
+     * {@link #setDataProvider(org.apache.click.dataprovider.DataProvider) data provider}.
+     *
+     * @param paginator the paginator which determines the window of items
+     */
+    public void setPaginator(Paginator paginator) {
+        this.paginator = paginator;
+    }
+
+    /**
+     * Return true if rows carry precomputed indexed control names, false if
+     * indexes are added and removed from control names on every request.
+     *
+     * @return true if indexed naming is enabled, false otherwise
+     */
+    public boolean isIndexedNaming() {
+        return indexedNaming;
+    }
+
+    /**
+     * Set whether rows carry precomputed indexed control names. The default
+     * value is false.
+     * <p/>
+     * This property must be set before the
+     * {@link #setDataProvider(org.apache.click.dataprovider.DataProvider) data provider}.
+     *
+     * @param indexedNaming true to enable indexed naming, false otherwise
+     */
+    public void setIndexedNaming(boolean indexedNaming) {
+        this.indexedNaming = indexedNaming;
+    }
+
+    /**
+     * Return the item property used to find the row of an item, or null if
+     * items are found by identity.
+     *
+     * @return the item property used to find the row of an item
+     */
+    public String getItemKey() {
+        return itemKey;
+    }
+
+    /**
+     * Set the item property used to find the row of an item, for example
+     * <tt>"id"</tt>. Items are found by identity if the item key is null.
+     * <p/>
+     * The item key should be unique for every item in the Repeater.
+     *
+     * @param itemKey the item property used to find the row of an item
+     */
+    public void setItemKey(String itemKey) {
+        this.itemKey = itemKey;
+        invalidateItemIndex();
     }
 
     public DataProvider getDataProvider() {
@@ -206,6 +463,7 @@ public abstract class Repeater extends AbstractContainer {
      */
     public void insertItem(Object item, int index) {
         getItems().add(index, item);
+        indexItem(item, index);
         createRow(index);
     }
 
@@ -217,6 +475,7 @@ public abstract class Repeater extends AbstractContainer {
     public void addItem(Object item) {
         getItems().add(item);
         int index = getItems().size();
+        indexItem(item, index - 1);
         createRow(index - 1);
     }
 
@@ -226,12 +485,14 @@ public abstract class Repeater extends AbstractContainer {
      * @param item the item to remove
      */
     public void removeItem(Object item) {
-        int index = getItems().indexOf(item);
-        boolean removed = getItems().remove(item);
-        if (removed) {
-            removed = removeRow(index);
-            // TODO throw exception if row was not removed?
+        int index = indexOfItem(item);
+        if (index < 0) {
+            return;
         }
+        getItems().remove(index);
+        unindexItem(item, index);
+        removeRow(index);
+        // TODO throw exception if row was not removed?
     }
 
     /**
@@ -243,26 +504,14 @@ public abstract class Repeater extends AbstractContainer {
      * @param item the item to move up in the list of {@link #items}
      */
     public void moveUp(Object item) {
-        List localItems = getItems();
-        int index = localItems.indexOf(item);
+        int index = indexOfItem(item);
 
-         // If item is already at top, exit early
-        if (index == 0) {
+         // If item is not found or already at top, exit early
+        if (index <= 0) {
             return;
         }
 
-        boolean itemRemoved = localItems.remove(item);
-        RepeaterRow row = (RepeaterRow) getControls().get(index);
-        boolean rowRemoved = super.remove(row);
-
-        // If item or row was not removed, exist early
-        if (!itemRemoved || !rowRemoved) {
-            return;
-        }
-        // Decrement index and add item and row at new index
-        --index;
-        localItems.add(index, item);
-        super.insert(row, index);
+        swap(index - 1, index);
     }
 
     /**
@@ -274,27 +523,14 @@ public abstract class Repeater extends AbstractContainer {
      * @param item the item to move down in the list of {@link #items}
      */
     public void moveDown(Object item) {
-        List localItems = getItems();
-        int index = localItems.indexOf(item);
-
-        // If item is already at bottom, exit early
-        if (index == localItems.size() - 1) {
-            return;
-        }
-
-        boolean itemRemoved = localItems.remove(item);
-        RepeaterRow row = (RepeaterRow) getControls().get(index);
-        boolean rowRemoved = super.remove(row);
+        int index = indexOfItem(item);
 
-        // If item or row was not removed, exist early
-        if (!itemRemoved || !rowRemoved) {
+        // If item is not found or already at bottom, exit early
+        if (index < 0 || index == getItems().size() - 1) {
             return;
         }
 
-        // Increment index and add item and row at new index
-        ++index;
-        localItems.add(index, item);
-        super.insert(row, index);
+        swap(index, index + 1);
     }
 
     // TODO create actionLinks for moveUp and moveDown ???
@@ -354,10 +590,14 @@ public abstract class Repeater extends AbstractContainer {
     public boolean onProcess() {
         boolean result = super.onProcess();
 
-        // Unwind control name indexes here so that new RepeaterRows added or
-        // inserted after onProcess (e.g. with an action listener) won't end up with
-        // indexes which are out of order.
-        removeIndexFromControlNames();
+        // With indexed naming, rows are renamed in preResponse if their index
+        // changed
+        if (!isIndexedNaming()) {
+            // Unwind control name indexes here so that new RepeaterRows added or
+            // inserted after onProcess (e.g. with an action listener) won't end up with
+            // indexes which are out of order.
+            removeIndexFromControlNames();
+        }
         return result;
     }
 
@@ -366,7 +606,9 @@ public abstract class Repeater extends AbstractContainer {
      * contained in a Repeater row to its associated item.
      * <p/>
      * This method delegates to {@link #copyTo(java.lang.Object)} for every
-     * item in the {@link #items} list.
+     * item in the {@link #items} list. As the row of each item is found
+     * through the item index, the cost of this method is linear in the number
+     * of items.
      */
     public void copyToItems() {
         if (getItems() == null) {
@@ -413,10 +655,18 @@ public abstract class Repeater extends AbstractContainer {
         if (localItems == null) {
             throw new IllegalStateException("Items have not been set.");
         }
-        //Object object = getItems().get(index);
-        int index = localItems.indexOf(item);
-        Container container = (Container) getControls().get(index);
-        ContainerUtils.copyContainerToObject(container, item);
+        int index = indexOfItem(item);
+        RepeaterRow row = (RepeaterRow) getControls().get(index);
+        if (isIndexedNaming()) {
+            row.applyNames();
+        }
+        try {
+            ContainerUtils.copyContainerToObject(row, item);
+        } finally {
+            if (isIndexedNaming()) {
+                row.applyIndexedNames();
+            }
+        }
     }
 
     /**
@@ -433,10 +683,18 @@ public abstract class Repeater extends AbstractContainer {
         if (getItems() == null) {
             throw new IllegalStateException("Items have not been set.");
         }
-        //Object object = getItems().get(index);
-        int index = getItems().indexOf(item);
-        Container container = (Container) getControls().get(index);
-        ContainerUtils.copyObjectToContainer(item, container);
+        int index = indexOfItem(item);
+        RepeaterRow row = (RepeaterRow) getControls().get(index);
+        if (isIndexedNaming()) {
+            row.applyNames();
+        }
+        try {
+            ContainerUtils.copyObjectToContainer(item, row);
+        } finally {
+            if (isIndexedNaming()) {
+                row.applyIndexedNames();
+            }
+        }
     }
 
     /**
@@ -454,6 +712,12 @@ public abstract class Repeater extends AbstractContainer {
         // create repeater in onRender  - repeater must buildRows and register with ControlRegistry
 
         registerInternalBehavior();
+
+        if (isKeysetMode()) {
+            pageKeyField = addWindowField(getPageKeyFieldName());
+        } else if (isWindowed()) {
+            firstItemField = addWindowField(getFirstItemFieldName());
+        }
     }
 
     /**
@@ -479,6 +743,7 @@ public abstract class Repeater extends AbstractContainer {
         }
 
         populateItems();
+        invalidateItemIndex();
 
         List repeaterItems = getItems();
 
@@ -488,21 +753,261 @@ public abstract class Repeater extends AbstractContainer {
             createRow(i);
         }
 
-        // TODO should the names be changed here or in a preOnProcess event???
-        // Update control name indexes to match incoming request parameters
-        addIndexToControlNames();
+        // With indexed naming, rows were indexed when created
+        if (!isIndexedNaming()) {
+            // TODO should the names be changed here or in a preOnProcess event???
+            // Update control name indexes to match incoming request parameters
+            addIndexToControlNames();
+        }
     }
 
+    /**
+     * Populate the {@link #items} list from the data provider.
+     * <p/>
+     * If a window of items is set through {@link #setMaxItems(int)},
+     * {@link #setFirstItem(int)} or {@link #setPaginator(net.sf.clickclick.control.paginator.Paginator)},
+     * only the items in the window are added. If the data provider is a
+     * {@link net.sf.clickclick.dataprovider.RangeDataProvider}, only the
+     * window is fetched. Otherwise list data is windowed with
+     * {@link java.util.List#subList(int, int)}, and other data is iterated
+     * without holding items outside the window.
+     * <p/>
+     * If the paginator is a {@link net.sf.clickclick.control.paginator.KeysetPaginator}
+     * in keyset mode, the data provider must be a
+     * {@link net.sf.clickclick.dataprovider.KeysetDataProvider}, and the page
+     * is fetched by key.
+     */
     protected void populateItems() {
+        if (isKeysetMode()) {
+            if (!(getDataProvider() instanceof KeysetDataProvider)) {
+                throw new IllegalStateException("A keyset mode paginator"
+                    + " requires a KeysetDataProvider");
+            }
+            populateItems((KeysetDataProvider<?>) getDataProvider(),
+                (KeysetPaginator) getPaginator());
+            return;
+        }
+
+        if (isWindowed() && getDataProvider() instanceof RangeDataProvider) {
+            populateItems((RangeDataProvider) getDataProvider());
+            return;
+        }
+
         Iterable it = getDataProvider().getData();
+        if (!isWindowed()) {
+            if (it instanceof List) {
+                setItems((List) it);
+            } else {
+                List localItems = getItems();
+                for (Object item : it) {
+                    localItems.add(item);
+                }
+            }
+            return;
+        }
+
+        int from = calcFirstItem();
+        if (it instanceof List) {
+            List<?> data = (List<?>) it;
+            updatePaginator(data.size());
+            from = Math.min(from, data.size());
+            // Copy the window, the data provider list must not be modified
+            setItems(new ArrayList<Object>(data.subList(from, calcLastItem(from, data.size()))));
+            return;
+        }
+
+        // Only keep the items in the window, but count all items in case a
+        // paginator needs the total
+        List<Object> localItems = new ArrayList<Object>();
+        int to = getMaxItems() == 0 ? Integer.MAX_VALUE : from + getMaxItems();
+        int count = 0;
+        for (Object item : it) {
+            if (count >= from && count < to) {
+                localItems.add(item);
+            } else if (count >= to && getPaginator() == null) {
+                break;
+            }
+            count++;
+        }
+        updatePaginator(count);
+        setItems(localItems);
+    }
+
+    /**
+     * Populate the {@link #items} list with the window of items fetched from
+     * the given data provider.
+     * <p/>
+     * If the paginator is a {@link CountingPaginator} with a
+     * {@link CountingPaginator#getCountStrategy() count strategy}, the data
+     * provider items are counted through the strategy, which may invoke
+     * {@link RangeDataProvider#size()} outside of the request thread. Unless
+     * an item counter is set on the paginator, the Repeater sets one which
+     * counts the current data provider. A data provider which implements
+     * {@link ItemCounter} also provides the estimate of the count.
+     * <p/>
+     * If the data provider is a {@link PagePrefetcher}, for example a
+     * {@link net.sf.clickclick.dataprovider.PrefetchingDataProvider}, and the
+     * paginator has no page prefetcher, the data provider is set as the
+     * paginator page prefetcher.
+     *
+     * @param rangeDataProvider the data provider to fetch the window from
+     */
+    protected void populateItems(RangeDataProvider rangeDataProvider) {
+        Paginator localPaginator = getPaginator();
+        if (localPaginator != null && localPaginator.getPagePrefetcher() == null
+            && rangeDataProvider instanceof PagePrefetcher) {
+            localPaginator.setPagePrefetcher((PagePrefetcher) rangeDataProvider);
+        }
+
+        int from = calcFirstItem();
+        int size = countItems(rangeDataProvider);
+        updatePaginator(size);
+        int limit;
+        if (isCountEstimated()) {
+            // The estimate may be too low, so fetch the window regardless
+            limit = getMaxItems() > 0 ? getMaxItems() : size;
+        } else {
+            from = Math.min(from, size);
+            limit = calcLastItem(from, size) - from;
+        }
+
+        Iterable it = limit == 0 ? new ArrayList() : rangeDataProvider.getData(from, limit);
         if (it instanceof List) {
             setItems((List) it);
         } else {
-            List localItems = getItems();
+            List<Object> localItems = new ArrayList<Object>();
             for (Object item : it) {
                 localItems.add(item);
             }
+            setItems(localItems);
+        }
+    }
+
+    /**
+     * Populate the {@link #items} list with the page of items fetched by key
+     * from the given data provider, and set the keys of the page on the
+     * given paginator.
+     * <p/>
+     * One item more than {@link #getMaxItems()} is fetched to determine if
+     * there is a next (or previous) page, so no total count is needed.
+     * <p/>
+     * If the paginator holds no key and the Repeater is in a form, the key
+     * posted with the form is used, so the rows of the posted page are
+     * rebuilt.
+     *
+     * @param keysetDataProvider the data provider to fetch the page from
+     * @param keysetPaginator the paginator which holds the requested key
+     */
+    protected <T> void populateItems(KeysetDataProvider<T> keysetDataProvider,
+        KeysetPaginator keysetPaginator) {
+        int limit = getMaxItems();
+        if (limit == 0) {
+            throw new IllegalStateException("maxItems must be set for a"
+                + " keyset mode paginator");
+        }
+        keysetPaginator.setItemsPerPage(limit);
+
+        String afterKey = keysetPaginator.getAfterKey();
+        String beforeKey = keysetPaginator.getBeforeKey();
+        if (afterKey == null && beforeKey == null) {
+            String postedKey = getContext().getRequestParameter(getPageKeyFieldName());
+            if (postedKey != null && postedKey.startsWith(AFTER_KEY_PREFIX)) {
+                afterKey = postedKey.substring(AFTER_KEY_PREFIX.length());
+            } else if (postedKey != null && postedKey.startsWith(BEFORE_KEY_PREFIX)) {
+                beforeKey = postedKey.substring(BEFORE_KEY_PREFIX.length());
+            }
+        }
+
+        List<T> data = new ArrayList<T>();
+        boolean hasPrevious;
+        boolean hasNext;
+        if (beforeKey != null) {
+            windowPageKey = BEFORE_KEY_PREFIX + beforeKey;
+            for (T item : keysetDataProvider.getDataBefore(beforeKey, limit + 1)) {
+                data.add(item);
+            }
+            hasPrevious = data.size() > limit;
+            if (hasPrevious) {
+                data = data.subList(data.size() - limit, data.size());
+            }
+            hasNext = true;
+        } else {
+            windowPageKey = afterKey == null ? "" : AFTER_KEY_PREFIX + afterKey;
+            for (T item : keysetDataProvider.getDataAfter(afterKey, limit + 1)) {
+                data.add(item);
+            }
+            hasNext = data.size() > limit;
+            if (hasNext) {
+                data = data.subList(0, limit);
+            }
+            hasPrevious = afterKey != null;
+        }
+
+        String firstKey = null;
+        String lastKey = null;
+        if (!data.isEmpty()) {
+            firstKey = keysetDataProvider.getKey(data.get(0));
+            lastKey = keysetDataProvider.getKey(data.get(data.size() - 1));
         }
+        keysetPaginator.setPageKeys(firstKey, lastKey, hasPrevious, hasNext);
+        setItems(data);
+    }
+
+    /**
+     * Return true if rows are only built for a window of data provider items.
+     *
+     * @return true if rows are only built for a window of items
+     */
+    protected boolean isWindowed() {
+        return getFirstItem() > 0 || getMaxItems() > 0 || getPaginator() != null;
+    }
+
+    /**
+     * Return the index of the given item in the {@link #items} list, or -1 if
+     * the item is not found.
+     * <p/>
+     * The item is looked up in the item index, which matches items by identity
+     * or by {@link #getItemKey() item key}. If the item is not indexed, this
+     * method falls back to {@link java.util.List#indexOf(java.lang.Object)}.
+     *
+     * @param item the item to find
+     * @return the index of the given item, or -1 if the item is not found
+     */
+    protected int indexOfItem(Object item) {
+        List localItems = getItems();
+
+        ItemPosition position = getItemIndexMap().get(getItemKeyValue(item));
+        if (position != null) {
+            if (isItemAt(item, position.index)) {
+                return position.index;
+            }
+
+            // The items list was modified directly, rebuild the index and retry
+            invalidateItemIndex();
+            position = getItemIndexMap().get(getItemKeyValue(item));
+            if (position != null && isItemAt(item, position.index)) {
+                return position.index;
+            }
+        }
+
+        int result = localItems.indexOf(item);
+        if (result >= 0 && isItemAt(item, result)) {
+            // The item was added to the items list directly
+            invalidateItemIndex();
+        }
+        return result;
+    }
+
+    /**
+     * Discard the item index. The index is rebuilt the next time an item is
+     * looked up.
+     * <p/>
+     * This method must be invoked when the {@link #items} list is modified
+     * directly by subclasses.
+     */
+    protected void invalidateItemIndex() {
+        itemIndexMap = null;
+        itemPositions = null;
     }
 
     /**
@@ -526,6 +1031,44 @@ public abstract class Repeater extends AbstractContainer {
         }
     }
 
+    /**
+     * Update the index of every RepeaterRow whose position changed, for
+     * example after items were inserted, removed or moved. Only the controls
+     * of rows which moved, or whose controls changed, are renamed.
+     * <p/>
+     * This method is used when {@link #isIndexedNaming() indexed naming} is
+     * enabled.
+     */
+    protected void updateRowIndexes() {
+        List localControls = getControls();
+        for (int count = 0; count < localControls.size(); count++ ) {
+            RepeaterRow row = (RepeaterRow) localControls.get(count);
+            if (row.getIndex() != count || row.isModified()) {
+                row.setIndex(count);
+            }
+        }
+    }
+
+    /**
+     * Find the control with the given plain name in the given row, regardless
+     * of whether the row controls currently carry indexed names.
+     *
+     * @param row the row to search
+     * @param name the plain name of the control to find
+     * @return the control with the given name or null if no match is found
+     */
+    protected Control findControlByName(RepeaterRow row, String name) {
+        if (!isIndexedNaming()) {
+            return ContainerUtils.findControlByName(row, name);
+        }
+        row.applyNames();
+        try {
+            return ContainerUtils.findControlByName(row, name);
+        } finally {
+            row.applyIndexedNames();
+        }
+    }
+
     /**
      * Removes the index from the name of child controls.
      */
@@ -548,20 +1091,7 @@ public abstract class Repeater extends AbstractContainer {
     private void addIndexToControlNames(final Container container, String index) {
         List<Control> localControls = container.getControls();
         for (Control control : localControls) {
-            if (control instanceof Field) {
-                Field field = (Field) control;
-
-                // Ensure the field label gets cached in case its index is changed
-                field.getLabel();
-                if (control instanceof FieldSet) {
-                    // Ensure fieldSet legend gets cached in case its index is changed
-                    ((FieldSet) field).getLegend();
-                }
-            } else if (control instanceof AbstractLink) {
-                ((AbstractLink) control).getLabel();
-            } else if (control instanceof Panel) {
-                ((Panel) control).getLabel();
-            }
+            cacheLabel(control);
 
             // Append the index to the Control name
             addIndex(control, index);
@@ -593,6 +1123,29 @@ public abstract class Repeater extends AbstractContainer {
         }
     }
 
+    /**
+     * Ensure the label of the given control is cached, in case it is derived
+     * from the control name and the name is indexed.
+     *
+     * @param control the control which label must be cached
+     */
+    static void cacheLabel(Control control) {
+        if (control instanceof Field) {
+            Field field = (Field) control;
+
+            // Ensure the field label gets cached in case its index is changed
+            field.getLabel();
+            if (control instanceof FieldSet) {
+                // Ensure fieldSet legend gets cached in case its index is changed
+                ((FieldSet) field).getLegend();
+            }
+        } else if (control instanceof AbstractLink) {
+            ((AbstractLink) control).getLabel();
+        } else if (control instanceof Panel) {
+            ((Panel) control).getLabel();
+        }
+    }
+
     /**
      * Adds the given index to the control.
      *
@@ -626,6 +1179,346 @@ public abstract class Repeater extends AbstractContainer {
         }
     }
 
+    /**
+     * Swap the items and rows at the given adjacent indexes.
+     *
+     * @param upperIndex the index of the upper item
+     * @param lowerIndex the index of the lower item
+     */
+    private void swap(int upperIndex, int lowerIndex) {
+        List localItems = getItems();
+        Object upperItem = localItems.get(upperIndex);
+        Object lowerItem = localItems.get(lowerIndex);
+
+        RepeaterRow row = (RepeaterRow) getControls().get(lowerIndex);
+        if (!super.remove(row)) {
+            return;
+        }
+        super.insert(row, upperIndex);
+
+        Collections.swap(localItems, upperIndex, lowerIndex);
+
+        if (itemIndexMap != null) {
+            if (itemPositions.size() != localItems.size()) {
+                invalidateItemIndex();
+                return;
+            }
+
+            // Swapping equal keys would index the second occurrence
+            if (!ObjectUtils.equals(getItemKeyValue(upperItem),
+                getItemKeyValue(lowerItem))) {
+                Collections.swap(itemPositions, upperIndex, lowerIndex);
+                itemPositions.get(upperIndex).index = upperIndex;
+                itemPositions.get(lowerIndex).index = lowerIndex;
+            }
+        }
+    }
+
+    /**
+     * Return the item index, building it if necessary.
+     *
+     * @return the map of items (or item keys) to row indexes
+     */
+    private Map<Object, ItemPosition> getItemIndexMap() {
+        if (itemIndexMap == null) {
+            List localItems = getItems();
+            int size = localItems.size();
+            if (getItemKey() == null) {
+                itemIndexMap = new IdentityHashMap<Object, ItemPosition>(size);
+            } else {
+                itemIndexMap = new HashMap<Object, ItemPosition>(size * 4 / 3 + 1);
+            }
+            ItemPosition[] positions = new ItemPosition[size];
+
+            // Iterate backwards so that, like List#indexOf, the first
+            // occurrence of a duplicate item wins
+            for (int i = size - 1; i >= 0; i--) {
+                positions[i] = new ItemPosition(i);
+                itemIndexMap.put(getItemKeyValue(localItems.get(i)), positions[i]);
+            }
+            itemPositions = new ArrayList<ItemPosition>(Arrays.asList(positions));
+        }
+        return itemIndexMap;
+    }
+
+    /**
+     * Add the item inserted at the given index to the item index, and shift
+     * the positions of the items after it. The index is left alone if it has
+     * not been built yet.
+     *
+     * @param item the inserted item
+     * @param index the index of the inserted item
+     */
+    private void indexItem(Object item, int index) {
+        if (itemIndexMap == null) {
+            return;
+        }
+        if (itemPositions.size() != getItems().size() - 1) {
+            // The items list was modified directly
+            invalidateItemIndex();
+            return;
+        }
+
+        ItemPosition position = new ItemPosition(index);
+        itemPositions.add(index, position);
+        shiftItemPositions(index + 1);
+
+        Object key = getItemKeyValue(item);
+        ItemPosition current = itemIndexMap.get(key);
+        if (current == null || current.index > index) {
+            itemIndexMap.put(key, position);
+        }
+    }
+
+    /**
+     * Remove the item removed from the given index from the item index, and
+     * shift the positions of the items after it. The index is left alone if
+     * it has not been built yet.
+     *
+     * @param item the removed item
+     * @param index the index the item was removed from
+     */
+    private void unindexItem(Object item, int index) {
+        if (itemIndexMap == null) {
+            return;
+        }
+        if (itemPositions.size() != getItems().size() + 1) {
+            // The items list was modified directly
+            invalidateItemIndex();
+            return;
+        }
+
+        ItemPosition position = itemPositions.remove(index);
+        shiftItemPositions(index);
+
+        // A later duplicate of the item is found by indexOfItem's fallback
+        Object key = getItemKeyValue(item);
+        if (itemIndexMap.get(key) == position) {
+            itemIndexMap.remove(key);
+        }
+    }
+
+    /**
+     * Update the positions from the given index onwards to match their place
+     * in the items list.
+     *
+     * @param fromIndex the index of the first position to update
+     */
+    private void shiftItemPositions(int fromIndex) {
+        for (int i = fromIndex, size = itemPositions.size(); i < size; i++) {
+            itemPositions.get(i).index = i;
+        }
+    }
+
+    /**
+     * Return the value under which the given item is indexed: the item itself,
+     * or the value of its {@link #getItemKey() item key} property.
+     *
+     * @param item the item to return the index value for
+     * @return the value under which the given item is indexed
+     */
+    private Object getItemKeyValue(Object item) {
+        if (item == null || getItemKey() == null) {
+            return item;
+        }
+        return PropertyUtils.getValue(item, getItemKey());
+    }
+
+    /**
+     * Return true if the item at the given index matches the given item.
+     *
+     * @param item the item to match
+     * @param index the index of the item to match against
+     * @return true if the item at the given index matches the given item
+     */
+    private boolean isItemAt(Object item, int index) {
+        List localItems = getItems();
+        if (index >= localItems.size()) {
+            return false;
+        }
+        Object candidate = localItems.get(index);
+        if (getItemKey() == null) {
+            return candidate == item;
+        }
+        return ObjectUtils.equals(getItemKeyValue(candidate), getItemKeyValue(item));
+    }
+
+    /**
+     * Return the index of the first item in the window. If a paginator and
+     * maximum items are set, the first item is calculated from its current
+     * page. If the rows of a window are posted, the paginator is first set to
+     * the page of the posted window.
+     *
+     * @return the index of the first item in the window
+     */
+    private int calcFirstItem() {
+        windowFirstItem = getFirstItem();
+        Paginator localPaginator = getPaginator();
+        if (localPaginator != null && getMaxItems() > 0) {
+            localPaginator.setItemsPerPage(getMaxItems());
+            int postedFirstItem = getPostedFirstItem();
+            if (postedFirstItem >= 0) {
+                // Let the paginator read the request first, so that the
+                // posted page is not overwritten by the paging link state
+                localPaginator.getCurrentPage();
+                localPaginator.setCurrentPage(postedFirstItem / getMaxItems());
+            }
+            int currentPage = localPaginator.getCurrentPage();
+            windowFirstItem = currentPage > 0 ? currentPage * getMaxItems() : 0;
+        }
+        return windowFirstItem;
+    }
+
+    /**
+     * Return true if the paginator is a
+     * {@link net.sf.clickclick.control.paginator.KeysetPaginator} in keyset
+     * mode.
+     *
+     * @return true if the paginator is in keyset mode
+     */
+    private boolean isKeysetMode() {
+        return getPaginator() instanceof KeysetPaginator
+            && ((KeysetPaginator) getPaginator()).isKeysetMode();
+    }
+
+    /**
+     * Return the name of the hidden field posting the key of the keyset page.
+     *
+     * @return the name of the hidden field posting the key of the page
+     */
+    private String getPageKeyFieldName() {
+        String localName = getName();
+        if (localName == null) {
+            localName = "repeater";
+        }
+        return localName + "_pageKey";
+    }
+
+    /**
+     * Return the name of the hidden field posting the first item of the
+     * window.
+     *
+     * @return the name of the hidden field posting the first item
+     */
+    private String getFirstItemFieldName() {
+        String localName = getName();
+        if (localName == null) {
+            localName = "repeater";
+        }
+        return localName + "_firstItem";
+    }
+
+    /**
+     * Return the first item of the posted window, or -1 if the request does
+     * not submit the form of the window.
+     *
+     * @return the first item of the posted window, or -1
+     */
+    private int getPostedFirstItem() {
+        String value = getContext().getRequestParameter(getFirstItemFieldName());
+        if (!NumberUtils.isDigits(value)) {
+            return -1;
+        }
+        return NumberUtils.toInt(value, -1);
+    }
+
+    /**
+     * Add the hidden field with the given name, which posts the window of
+     * the rows, to the enclosing form.
+     *
+     * @param fieldName the name of the hidden field
+     * @return the hidden field, or null if there is no enclosing form
+     */
+    private HiddenField addWindowField(String fieldName) {
+        Form form = ContainerUtils.findForm(this);
+        if (form == null) {
+            return null;
+        }
+        Field field = form.getField(fieldName);
+        if (field instanceof HiddenField) {
+            return (HiddenField) field;
+        } else if (field == null) {
+            HiddenField hiddenField = new HiddenField(fieldName, String.class);
+            form.add(hiddenField);
+            return hiddenField;
+        }
+        return null;
+    }
+
+    /**
+     * Return the total number of items of the given data provider, counted
+     * through the count strategy of the paginator if set.
+     *
+     * @param rangeDataProvider the data provider to count the items of
+     * @return the total number of data provider items, exact or estimated
+     */
+    private int countItems(final RangeDataProvider rangeDataProvider) {
+        if (!(getPaginator() instanceof CountingPaginator)) {
+            return rangeDataProvider.size();
+        }
+        CountingPaginator countingPaginator = (CountingPaginator) getPaginator();
+        if (countingPaginator.getCountStrategy() == null) {
+            return rangeDataProvider.size();
+        }
+
+        // Replace the item counter set for a previous data provider
+        ItemCounter itemCounter = countingPaginator.getItemCounter();
+        if (itemCounter == null || (itemCounter == defaultItemCounter
+            && countedDataProvider != rangeDataProvider)) {
+            if (rangeDataProvider instanceof ItemCounter) {
+                defaultItemCounter = (ItemCounter) rangeDataProvider;
+            } else {
+                defaultItemCounter = new ItemCounter() {
+                    public int countItems() {
+                        return rangeDataProvider.size();
+                    }
+
+                    public int estimateItems() {
+                        return -1;
+                    }
+                };
+            }
+            countedDataProvider = rangeDataProvider;
+            countingPaginator.setItemCounter(defaultItemCounter);
+        }
+        return countingPaginator.getTotalItems();
+    }
+
+    /**
+     * Return true if the paginator total items are an estimate.
+     *
+     * @return true if the paginator total items are an estimate
+     */
+    private boolean isCountEstimated() {
+        return getPaginator() instanceof CountingPaginator
+            && ((CountingPaginator) getPaginator()).isTotalItemsEstimated();
+    }
+
+    /**
+     * Set the total number of data provider items on the paginator, if set.
+     *
+     * @param totalItems the total number of data provider items
+     */
+    private void updatePaginator(int totalItems) {
+        if (getPaginator() != null) {
+            getPaginator().setTotalItems(totalItems);
+        }
+    }
+
+    /**
+     * Return the index after the last item in the window.
+     *
+     * @param from the index of the first item in the window
+     * @param totalItems the total number of data provider items
+     * @return the index after the last item in the window
+     */
+    private int calcLastItem(int from, int totalItems) {
+        if (getMaxItems() == 0) {
+            return totalItems;
+        }
+        return Math.min(from + getMaxItems(), totalItems);
+    }
+
     /**
      * Create a new RepeaterRow for the given index.
      *
@@ -636,6 +1529,10 @@ public abstract class Repeater extends AbstractContainer {
         super.insert(row, index);
         Object item = getItems().get(index);
         buildRow(item, row, index);
+
+        if (isIndexedNaming()) {
+            row.setIndex(index);
+        }
     }
 
     /**
@@ -690,7 +1587,39 @@ public abstract class Repeater extends AbstractContainer {
         }
 
         public void preResponse(Control source) {
-            addIndexToControlNames();
+            if (firstItemField != null) {
+                firstItemField.setValue(String.valueOf(windowFirstItem));
+            }
+            if (pageKeyField != null) {
+                pageKeyField.setValue(windowPageKey);
+            }
+            if (isIndexedNaming()) {
+                updateRowIndexes();
+            } else {
+                addIndexToControlNames();
+            }
+        }
+    }
+
+    /**
+     * Provides the mutable position of an indexed item, which allows the
+     * positions after an inserted or removed item to be shifted without
+     * rehashing the item keys.
+     */
+    private static class ItemPosition implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The index of the item in the items list. */
+        int index;
+
+        /**
+         * Create an ItemPosition for the given index.
+         *
+         * @param index the index of the item
+         */
+        ItemPosition(int index) {
+            this.index = index;
         }
     }
 }
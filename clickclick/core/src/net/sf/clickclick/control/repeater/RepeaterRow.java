@@ -13,7 +13,13 @@
  */
 package net.sf.clickclick.control.repeater;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.click.Control;
 import org.apache.click.control.AbstractContainer;
+import org.apache.click.control.Container;
+import org.apache.click.util.HtmlStringBuffer;
 
 /**
  * Provides a non-visible container for the {@link Repeater} control where
@@ -22,9 +28,36 @@ import org.apache.click.control.AbstractContainer;
  * <p/>
  * <b>Please note:</b> RepeaterRows are automatically created by the Repeater
  * as needed, and is generally not managed by users.
+ * <p/>
+ * When the Repeater uses {@link Repeater#setIndexedNaming(boolean) indexed naming},
+ * the row carries its {@link #getIndex() index} and holds the plain and
+ * indexed names of its child controls, so that names can be switched without
+ * walking the control tree again. The named controls are collected again
+ * when controls are added to or removed from the row or its child containers.
  */
 public class RepeaterRow extends AbstractContainer {
 
+    // -------------------------------------------------------------- Constants
+
+    private static final long serialVersionUID = 1L;
+
+    // -------------------------------------------------------------- Variables
+
+    /** The index of the row, or -1 if the row has not been indexed. */
+    private int index = -1;
+
+    /** The named child controls of the row. */
+    private Control[] namedControls;
+
+    /** The plain names of the {@link #namedControls}. */
+    private String[] names;
+
+    /** The indexed names of the {@link #namedControls}. */
+    private String[] indexedNames;
+
+    /** The number of controls in the row when the names were collected. */
+    private int controlCount = -1;
+
     /**
      * Create a default row.
      */
@@ -39,4 +72,164 @@ public class RepeaterRow extends AbstractContainer {
     public RepeaterRow(String name) {
         super(name);
     }
+
+    // ------------------------------------------------------ Public Properties
+
+    /**
+     * Return the index of the row in the Repeater, or -1 if the row has not
+     * been indexed.
+     *
+     * @return the index of the row in the Repeater
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * @see org.apache.click.control.Container#insert(org.apache.click.Control, int)
+     *
+     * @param control the control to add to the row
+     * @param index the index at which the control is to be inserted
+     * @return the control that was added to the row
+     */
+    public Control insert(Control control, int index) {
+        controlCount = -1;
+        return super.insert(control, index);
+    }
+
+    /**
+     * @see org.apache.click.control.Container#remove(org.apache.click.Control)
+     *
+     * @param control the control to remove from the row
+     * @return true if the control was removed from the row
+     */
+    public boolean remove(Control control) {
+        controlCount = -1;
+        return super.remove(control);
+    }
+
+    // ------------------------------------------------ Package Private Methods
+
+    /**
+     * Set the index of the row and apply the indexed names to the child
+     * controls.
+     * <p/>
+     * The first invocation collects the named child controls of the row, and
+     * they are collected again if the {@link #isModified() controls changed}.
+     * Otherwise the indexed names are only rebuilt if the index changed.
+     *
+     * @param index the index of the row
+     */
+    void setIndex(int index) {
+        if (isModified()) {
+            // Collect the plain names, not the names applied previously
+            applyNames();
+
+            List<Control> controls = new ArrayList<Control>();
+            controlCount = collectNamedControls(this, controls);
+            namedControls = controls.toArray(new Control[controls.size()]);
+            names = new String[namedControls.length];
+            for (int i = 0; i < namedControls.length; i++) {
+                names[i] = namedControls[i].getName();
+            }
+            indexedNames = null;
+        }
+
+        if (indexedNames == null || this.index != index) {
+            this.index = index;
+            String suffix = "_" + index;
+            indexedNames = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                HtmlStringBuffer buffer = new HtmlStringBuffer(names[i].length() + suffix.length());
+                buffer.append(names[i]);
+                buffer.append(suffix);
+                indexedNames[i] = buffer.toString();
+            }
+        }
+
+        applyIndexedNames();
+    }
+
+    /**
+     * Return true if the named controls have not been collected yet, or if
+     * controls were added to or removed from the row or its child containers
+     * since they were collected.
+     *
+     * @return true if the named controls must be collected again
+     */
+    boolean isModified() {
+        return controlCount < 0 || controlCount != countControls(this);
+    }
+
+    /**
+     * Set the indexed names on the child controls.
+     */
+    void applyIndexedNames() {
+        if (indexedNames == null) {
+            return;
+        }
+        for (int i = 0; i < namedControls.length; i++) {
+            namedControls[i].setName(indexedNames[i]);
+        }
+    }
+
+    /**
+     * Set the plain names on the child controls.
+     */
+    void applyNames() {
+        if (names == null) {
+            return;
+        }
+        for (int i = 0; i < namedControls.length; i++) {
+            namedControls[i].setName(names[i]);
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Collect the named child controls of the given container, and cache any
+     * labels which are derived from the control name.
+     *
+     * @param container the container to collect named controls from
+     * @param controls the list to add named controls to
+     * @return the number of controls in the given container and its child
+     * containers
+     */
+    private int collectNamedControls(Container container, List<Control> controls) {
+        List<Control> localControls = container.getControls();
+        int count = localControls.size();
+        for (int i = 0; i < localControls.size(); i++) {
+            Control control = localControls.get(i);
+            Repeater.cacheLabel(control);
+            if (control.getName() != null) {
+                controls.add(control);
+            }
+            if (control instanceof Container) {
+                count += collectNamedControls((Container) control, controls);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the number of controls in the given container and its child
+     * containers.
+     *
+     * @param container the container to count the controls of
+     * @return the number of controls in the given container
+     */
+    private int countControls(Container container) {
+        List<Control> localControls = container.getControls();
+        int count = localControls.size();
+        for (int i = 0; i < localControls.size(); i++) {
+            Control control = localControls.get(i);
+            if (control instanceof Container) {
+                count += countControls((Container) control);
+            }
+        }
+        return count;
+    }
 }
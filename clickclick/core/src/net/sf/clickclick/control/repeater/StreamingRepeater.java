@@ -0,0 +1,438 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.control.repeater;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.clickclick.control.data.DataControl;
+import net.sf.clickclick.control.paginator.Paginator;
+import net.sf.clickclick.dataprovider.RangeDataProvider;
+
+import org.apache.click.Control;
+import org.apache.click.control.Container;
+import org.apache.click.dataprovider.DataProvider;
+import org.apache.click.util.HtmlStringBuffer;
+
+/**
+ * Provides a read-only Repeater which builds and renders one row at a time.
+ * <p/>
+ * Unlike a {@link Repeater}, a StreamingRepeater does not build a
+ * {@link RepeaterRow} for every item when the data provider is set. Instead
+ * the items are pulled from the data provider when the Repeater is rendered.
+ * If the data provider is a {@link net.sf.clickclick.dataprovider.RangeDataProvider}
+ * and {@link #setMaxItems(int) max items} is set, only the window of items is
+ * fetched.
+ * For each item a row is built, rendered and discarded, so the control tree
+ * never holds more than one row.
+ * <p/>
+ * As no rows are kept, a StreamingRepeater cannot process posted values and
+ * methods such as {@link #copyTo(java.lang.Object)} or
+ * {@link #moveUp(java.lang.Object)} do not apply. Use it for read-only
+ * listings and reports.
+ * <p/>
+ * When the Repeater is rendered through a template, the rows are rendered to
+ * the template buffer. To keep memory flat for very large listings, render the
+ * Repeater straight to the response {@link java.io.Writer} with
+ * {@link #render(java.io.Writer)}. Output is written in chunks of
+ * {@link #setChunkSize(int) chunk size} characters.
+ * <p/>
+ * For example:
+ *
+ * <pre class="prettyprint">
+ * public class ReportPage extends Page {
+ *
+ *     private StreamingRepeater repeater = new StreamingRepeater("repeater") {
+ *         public void buildRow(Object item, RepeaterRow row, int index) {
+ *             Customer customer = (Customer) item;
+ *             row.add(new Text(customer.getName()));
+ *         }
+ *     };
+ *
+ *     public void onInit() {
+ *         repeater.setDataProvider(new DataProvider() {
+ *             public Iterable getData() {
+ *                 return getCustomerService().iterateCustomers();
+ *             }
+ *         });
+ *     }
+ *
+ *     public void onGet() {
+ *         HttpServletResponse response = getContext().getResponse();
+ *         response.setContentType("text/html");
+ *         try {
+ *             repeater.render(response.getWriter());
+ *         } catch (IOException e) {
+ *             throw new RuntimeException(e);
+ *         }
+ *
+ *         // Set the Page path to null, to signal Click that the response
+ *         // was written directly
+ *         setPath(null);
+ *     }
+ * } </pre>
+ *
+ * <h3>Row template</h3>
+ *
+ * By default a new row is built for every item. With
+ * {@link #setRowTemplate(boolean) row template} enabled, the row is built once
+ * from the first item and then re-bound to every following item through
+ * {@link #bindRow(java.lang.Object, net.sf.clickclick.control.repeater.RepeaterRow, int)}.
+ * By default every {@link net.sf.clickclick.control.data.DataControl} (for
+ * example inside a {@link net.sf.clickclick.control.data.DataCell}) which
+ * data source is the first item, is switched to the current item. Override
+ * <tt>bindRow</tt> to re-bind other controls.
+ * <p/>
+ * For example:
+ *
+ * <pre class="prettyprint">
+ * StreamingRepeater repeater = new StreamingRepeater("repeater") {
+ *     public void buildRow(Object item, RepeaterRow row, int index) {
+ *         DataRow dataRow = new DataRow();
+ *         row.add(dataRow);
+ *         dataRow.add(item, "name");
+ *         dataRow.add(item, "holdings", "{0,number,currency}");
+ *     }
+ * };
+ * repeater.setRowTemplate(true); </pre>
+ */
+public abstract class StreamingRepeater extends Repeater {
+
+    // -------------------------------------------------------------- Constants
+
+    private static final long serialVersionUID = 1L;
+
+    // -------------------------------------------------------------- Variables
+
+    /** The number of characters buffered before writing to the Writer. */
+    private int chunkSize = 8192;
+
+    /** Indicates if a single row is built and re-bound to every item. */
+    private boolean rowTemplate = false;
+
+    /** The DataControls of the row template bound to the current item. */
+    private transient List<DataControl> boundDataControls;
+
+    // Constructors -----------------------------------------------------------
+
+    /**
+     * Create a default StreamingRepeater.
+     */
+    public StreamingRepeater() {
+    }
+
+    /**
+     * Create a StreamingRepeater with the given name.
+     *
+     * @param name the repeater name
+     */
+    public StreamingRepeater(String name) {
+        super(name);
+    }
+
+    // ------------------------------------------------------ Public Properties
+
+    /**
+     * Return the number of characters buffered before they are written to the
+     * Writer.
+     *
+     * @return the number of characters buffered before they are written
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Set the number of characters buffered before they are written to the
+     * Writer. The default value is 8192.
+     *
+     * @param chunkSize the number of characters buffered before they are
+     * written
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be greater"
+                + " than 0: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Return true if a single row is built and re-bound to every item, false
+     * if a new row is built for every item.
+     *
+     * @return true if a single row is re-bound to every item
+     */
+    public boolean isRowTemplate() {
+        return rowTemplate;
+    }
+
+    /**
+     * Set whether a single row is built and re-bound to every item. The
+     * default value is false.
+     *
+     * @param rowTemplate true if a single row is re-bound to every item
+     */
+    public void setRowTemplate(boolean rowTemplate) {
+        this.rowTemplate = rowTemplate;
+    }
+
+    /**
+     * Set the data provider. Rows are not built until the Repeater is
+     * rendered.
+     *
+     * @param dataProvider the data provider of the Repeater items
+     */
+    @Override
+    public void setDataProvider(DataProvider dataProvider) {
+        this.dataProvider = dataProvider;
+    }
+
+    /**
+     * @throws UnsupportedOperationException if invoked. A paginator needs the
+     * total number of items, which is only known once all rows are rendered.
+     * Use {@link #setFirstItem(int)} and {@link #setMaxItems(int)} instead.
+     */
+    @Override
+    public void setPaginator(Paginator paginator) {
+        throw new UnsupportedOperationException("Method not supported. Rather"
+            + " use #setFirstItem and #setMaxItems.");
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Render the Repeater rows to the given buffer, building one row at a
+     * time.
+     *
+     * @see org.apache.click.Control#render(org.apache.click.util.HtmlStringBuffer)
+     *
+     * @param buffer the specified buffer to render the rows to
+     */
+    @Override
+    public void render(HtmlStringBuffer buffer) {
+        try {
+            renderRows(buffer, null);
+        } catch (IOException e) {
+            // Cannot happen without a Writer
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Render the Repeater rows to the given Writer, building one row at a time.
+     * Output is written in chunks of {@link #getChunkSize() chunk size}
+     * characters.
+     *
+     * @param writer the Writer to render the rows to
+     * @throws IOException if the rows cannot be written
+     */
+    public void render(Writer writer) throws IOException {
+        if (writer == null) {
+            throw new IllegalArgumentException("Writer cannot be null");
+        }
+        renderRows(new HtmlStringBuffer(getChunkSize() + getChunkSize() / 4), writer);
+    }
+
+    /**
+     * Returns the HTML representation of the Repeater rows.
+     *
+     * @return the HTML representation of the Repeater rows
+     */
+    @Override
+    public String toString() {
+        HtmlStringBuffer buffer = new HtmlStringBuffer(getChunkSize());
+        render(buffer);
+        return buffer.toString();
+    }
+
+    // ------------------------------------------------------ Protected Methods
+
+    /**
+     * Rows are built when the Repeater is rendered, so this method does nothing.
+     */
+    @Override
+    protected void buildRows() {
+    }
+
+    /**
+     * Build and render a row for every item in the window of data provider
+     * items. If a Writer is given, the buffer is written to the Writer and
+     * replaced whenever it reaches the {@link #getChunkSize() chunk size}.
+     *
+     * @param buffer the buffer to render rows to
+     * @param writer the Writer to flush the buffer to, or null to keep all
+     * output in the buffer
+     * @throws IOException if the rows cannot be written
+     */
+    protected void renderRows(HtmlStringBuffer buffer, Writer writer) throws IOException {
+        DataProvider localDataProvider = getDataProvider();
+        if (localDataProvider == null) {
+            throw new IllegalStateException("No data provider set.");
+        }
+
+        int from = getFirstItem();
+        int to = getMaxItems() == 0 ? Integer.MAX_VALUE : from + getMaxItems();
+        Iterable data;
+        if (getMaxItems() > 0 && localDataProvider instanceof RangeDataProvider) {
+            // Only fetch the window, which starts at the first item
+            data = ((RangeDataProvider) localDataProvider).getData(from, getMaxItems());
+            to -= from;
+            from = 0;
+        } else {
+            data = localDataProvider.getData();
+        }
+
+        int count = 0;
+        RepeaterRow templateRow = null;
+        try {
+            for (Object item : data) {
+                if (count >= to) {
+                    break;
+                }
+                if (count >= from) {
+                    int index = count - from;
+                    RepeaterRow row;
+                    if (!isRowTemplate()) {
+                        row = createRow(item, index);
+                    } else if (templateRow == null) {
+                        templateRow = createTemplateRow(item, index);
+                        row = templateRow;
+                    } else {
+                        bindRow(item, templateRow, index);
+                        row = templateRow;
+                    }
+
+                    renderRow(row, index, buffer);
+                    if (writer != null && buffer.length() >= getChunkSize()) {
+                        writer.write(buffer.toString());
+                        buffer = new HtmlStringBuffer(getChunkSize() + getChunkSize() / 4);
+                    }
+                }
+                count++;
+            }
+        } finally {
+            boundDataControls = null;
+        }
+
+        if (writer != null) {
+            writer.write(buffer.toString());
+            writer.flush();
+        }
+    }
+
+    /**
+     * Re-bind the row template to the given item. This method is invoked for
+     * every item after the first when {@link #isRowTemplate() row template}
+     * is enabled.
+     * <p/>
+     * By default the data source of every DataControl bound to the first item
+     * is set to the given item. Override this method to re-bind other
+     * controls, for example:
+     *
+     * <pre class="prettyprint">
+     * protected void bindRow(Object item, RepeaterRow row, int index) {
+     *     super.bindRow(item, row, index);
+     *     Customer customer = (Customer) item;
+     *     nameLink.setParameter("id", customer.getId());
+     * } </pre>
+     *
+     * @param item the item to bind the row to
+     * @param row the row template
+     * @param index the index of the given item
+     */
+    protected void bindRow(Object item, RepeaterRow row, int index) {
+        List<DataControl> localDataControls = boundDataControls;
+        if (localDataControls == null) {
+            return;
+        }
+        for (int i = 0; i < localDataControls.size(); i++) {
+            localDataControls.get(i).setDataSource(item);
+        }
+    }
+
+    /**
+     * Create a new row for the given item.
+     *
+     * @param item the item to create a row for
+     * @param index the index of the row
+     * @return the new row
+     */
+    protected RepeaterRow createRow(Object item, int index) {
+        RepeaterRow row = new RepeaterRow();
+        row.setParent(this);
+        buildRow(item, row, index);
+        return row;
+    }
+
+    /**
+     * Render the given row to the given buffer.
+     *
+     * @param row the row to render
+     * @param index the index of the row
+     * @param buffer the buffer to render the row to
+     */
+    protected void renderRow(RepeaterRow row, int index, HtmlStringBuffer buffer) {
+        // Ensure control names are unique
+        row.setIndex(index);
+
+        int before = buffer.length();
+        row.render(buffer);
+        if (before != buffer.length()) {
+            buffer.append("\n");
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Create the row template from the first item and collect the
+     * DataControls bound to the item.
+     *
+     * @param item the first item
+     * @param index the index of the first item
+     * @return the row template
+     */
+    private RepeaterRow createTemplateRow(Object item, int index) {
+        RepeaterRow row = createRow(item, index);
+        boundDataControls = new ArrayList<DataControl>();
+        collectDataControls(row, item, boundDataControls);
+        return row;
+    }
+
+    /**
+     * Collect the DataControls of the given container bound to the given item.
+     *
+     * @param container the container to collect DataControls from
+     * @param item the item the DataControls must be bound to
+     * @param dataControls the list to add DataControls to
+     */
+    private void collectDataControls(Container container, Object item,
+        List<DataControl> dataControls) {
+        List<Control> controls = container.getControls();
+        for (int i = 0; i < controls.size(); i++) {
+            Control control = controls.get(i);
+            if (control instanceof DataControl) {
+                DataControl dataControl = (DataControl) control;
+                if (dataControl.getDataSource() == item) {
+                    dataControls.add(dataControl);
+                }
+            } else if (control instanceof Container) {
+                collectDataControls((Container) control, item, dataControls);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.dataprovider;
+
+/**
+ * Provides the total number of items of a query, exactly and optionally as a
+ * fast estimate.
+ * <p/>
+ * An exact count, for example <tt>SELECT COUNT(*)</tt>, can be slow on large
+ * tables, while the backing store can often estimate the count cheaply, for
+ * example from its table statistics. A
+ * {@link net.sf.clickclick.control.paginator.CountStrategy} decides which one
+ * a {@link net.sf.clickclick.control.paginator.CountingPaginator}, such as
+ * {@link net.sf.clickclick.control.paginator.SimplePaginator}, renders.
+ * <p/>
+ * A {@link RangeDataProvider} can implement this interface to provide an
+ * estimate to the paginator of a
+ * {@link net.sf.clickclick.control.repeater.Repeater}.
+ */
+public interface ItemCounter {
+
+    /**
+     * Return the exact total number of items. This method may be invoked
+     * outside of the request thread.
+     *
+     * @return the exact total number of items
+     */
+    public int countItems();
+
+    /**
+     * Return a fast estimate of the total number of items, or -1 if no
+     * estimate is available.
+     *
+     * @return an estimate of the total number of items, or -1
+     */
+    public int estimateItems();
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.dataprovider;
+
+import org.apache.click.dataprovider.DataProvider;
+
+/**
+ * Provides a DataProvider which fetches its data by key instead of by offset,
+ * also known as keyset or cursor pagination.
+ * <p/>
+ * Every item has an opaque key, for example its primary key or its sort
+ * column values, which identifies its position in the sort order. A page is
+ * fetched with the items after the last key of the previous page, or before
+ * the first key of the next page, which the backing store can usually seek to
+ * through an index. Neither an offset scan nor the total number of items is
+ * needed.
+ * <p/>
+ * A {@link net.sf.clickclick.control.repeater.Repeater} uses this interface
+ * when its paginator is a {@link net.sf.clickclick.control.paginator.KeysetPaginator}
+ * in keyset mode. For example:
+ *
+ * <pre class="prettyprint">
+ * paginator.setKeysetMode(true);
+ * repeater.setMaxItems(10);
+ * repeater.setPaginator(paginator);
+ * repeater.setDataProvider(new KeysetDataProvider() {
+ *
+ *     public List getData() {
+ *         return getCustomerService().getCustomers();
+ *     }
+ *
+ *     public List getDataAfter(String key, int limit) {
+ *         // SELECT ... WHERE id &gt; :key ORDER BY id LIMIT :limit
+ *         return getCustomerService().getCustomersAfter(key, limit);
+ *     }
+ *
+ *     public List getDataBefore(String key, int limit) {
+ *         // SELECT ... WHERE id &lt; :key ORDER BY id DESC LIMIT :limit, reversed
+ *         return getCustomerService().getCustomersBefore(key, limit);
+ *     }
+ *
+ *     public String getKey(Object item) {
+ *         return String.valueOf(((Customer) item).getId());
+ *     }
+ * }); </pre>
+ */
+public interface KeysetDataProvider<T> extends DataProvider<T> {
+
+    /**
+     * Return at most <tt>limit</tt> items following the item with the given
+     * key, in sort order. If the key is null, the first items are returned.
+     *
+     * @param key the key of the item preceding the items to return, or null
+     * @param limit the maximum number of items to return
+     * @return the items following the given key, in sort order
+     */
+    public Iterable<T> getDataAfter(String key, int limit);
+
+    /**
+     * Return at most <tt>limit</tt> items preceding the item with the given
+     * key, in sort order. These are the <tt>limit</tt> items closest to the
+     * key, so the last item returned directly precedes the key.
+     *
+     * @param key the key of the item following the items to return
+     * @param limit the maximum number of items to return
+     * @return the items preceding the given key, in sort order
+     */
+    public Iterable<T> getDataBefore(String key, int limit);
+
+    /**
+     * Return the key of the given item. The key is rendered URL encoded in
+     * links and posted in a hidden field, so it should not contain
+     * confidential information.
+     *
+     * @param item the item to return the key of
+     * @return the key of the given item
+     */
+    public String getKey(T item);
+}
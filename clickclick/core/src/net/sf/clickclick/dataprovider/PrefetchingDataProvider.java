@@ -0,0 +1,561 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.dataprovider;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpSession;
+
+import net.sf.clickclick.control.paginator.PagePrefetcher;
+import org.apache.click.Context;
+import org.apache.click.service.LogService;
+import org.apache.click.util.ClickUtils;
+
+/**
+ * Provides a RangeDataProvider which serves item ranges from a per-session
+ * cache, and loads the ranges of adjacent pages into the cache in the
+ * background.
+ * <p/>
+ * The data provider decorates another RangeDataProvider. Set it as the
+ * data provider of a {@link net.sf.clickclick.control.repeater.Repeater}
+ * with a {@link net.sf.clickclick.control.paginator.SimplePaginator}: after
+ * the paginator rendered page N, the items of pages N+1 and N-1 are fetched
+ * in the background, so clicking <tt>next</tt> or <tt>previous</tt> does not
+ * wait for the backing store. For example:
+ *
+ * <pre class="prettyprint">
+ * repeater.setMaxItems(10);
+ * repeater.setPaginator(paginator);
+ * repeater.setDataProvider(new PrefetchingDataProvider("customers", new RangeDataProvider() {
+ *     ...
+ * })); </pre>
+ *
+ * The cache is stored in the session, and holds at most
+ * {@link #MAX_CACHED_RANGES} ranges of all the prefetching data providers
+ * of the session, least recently used ranges are removed first. A cached
+ * range is served for {@link #setTimeToLive(long) time to live}
+ * milliseconds. The cache is not replicated with the session. The data
+ * provider does not create a session: without a session, ranges are fetched
+ * from the decorated data provider and nothing is prefetched.
+ * <p/>
+ * The decorated data provider is invoked outside of the request thread, so
+ * it must not depend on the request. Failed prefetches are logged, and the
+ * range is fetched again when it is requested.
+ *
+ * @param <T> the type of the data items
+ */
+public class PrefetchingDataProvider<T> implements RangeDataProvider<T>, PagePrefetcher {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The maximum number of cached ranges per session: <tt>8</tt>. */
+    public static final int MAX_CACHED_RANGES = 8;
+
+    /** The default time to live of a cached range: <tt>30000</tt> ms. */
+    public static final long DEFAULT_TIME_TO_LIVE = 30000;
+
+    /** The maximum number of queued prefetches of the default executor. */
+    private static final int MAX_QUEUED_PREFETCHES = 50;
+
+    /** The session attribute name of the range cache. */
+    private static final String RANGE_CACHE_ATTRIBUTE =
+        PrefetchingDataProvider.class.getName() + ".rangeCache";
+
+    /** The default executor of the prefetches, or null if not created yet. */
+    private static Executor defaultExecutor;
+
+    // -------------------------------------------------------------- Variables
+
+    /** The key identifying the data of this data provider in the cache. */
+    private final String key;
+
+    /** The decorated data provider. */
+    private final RangeDataProvider<T> dataProvider;
+
+    /** The time in milliseconds a cached range is served. */
+    private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+    /** The executor of the prefetches, or null to use the default executor. */
+    private Executor executor;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create a PrefetchingDataProvider which decorates the given data
+     * provider.
+     *
+     * @param key the key identifying the data in the cache, which must
+     * include the filter values of the data
+     * @param dataProvider the data provider to decorate
+     */
+    public PrefetchingDataProvider(String key, RangeDataProvider<T> dataProvider) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null key parameter");
+        }
+        if (dataProvider == null) {
+            throw new IllegalArgumentException("Null dataProvider parameter");
+        }
+        this.key = key;
+        this.dataProvider = dataProvider;
+    }
+
+    // ------------------------------------------------------ Public Properties
+
+    /**
+     * Return the time in milliseconds a cached range is served.
+     *
+     * @return the time in milliseconds a cached range is served
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Set the time in milliseconds a cached range is served.
+     *
+     * @param timeToLive the time in milliseconds a cached range is served
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Return the executor of the prefetches. Defaults to a single daemon
+     * thread shared by all prefetching data providers, which discards the
+     * oldest prefetches when too many are queued.
+     *
+     * @return the executor of the prefetches
+     */
+    public Executor getExecutor() {
+        if (executor == null) {
+            return getDefaultExecutor();
+        }
+        return executor;
+    }
+
+    /**
+     * Set the executor of the prefetches.
+     * <p/>
+     * The executor must run every prefetch it accepts, or throw a
+     * RejectedExecutionException. A prefetch which is dropped silently keeps
+     * its range marked as loading, and the range is not prefetched again.
+     *
+     * @param executor the executor of the prefetches
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return all the items of the decorated data provider. All items are not
+     * cached.
+     *
+     * @return all the items of the decorated data provider
+     */
+    public Iterable<T> getData() {
+        return dataProvider.getData();
+    }
+
+    /**
+     * Return the given range of items from the cache, or from the decorated
+     * data provider if the range is not cached. A range fetched from the
+     * decorated data provider is cached.
+     *
+     * @param offset the index of the first item to return, starting from 0
+     * @param limit the maximum number of items to return
+     * @return the items in the given range
+     */
+    public Iterable<T> getData(int offset, int limit) {
+        RangeCache rangeCache = getRangeCache();
+        if (rangeCache == null) {
+            return dataProvider.getData(offset, limit);
+        }
+
+        String rangeKey = getRangeKey(offset, limit);
+        List<T> items = rangeCache.get(rangeKey, timeToLive);
+        if (items == null) {
+            items = fetch(offset, limit);
+            rangeCache.put(rangeKey, items);
+        }
+        // The caller may modify the items list
+        return new ArrayList<T>(items);
+    }
+
+    /**
+     * Return the total number of items of the decorated data provider.
+     *
+     * @return the total number of items of the decorated data provider
+     */
+    public int size() {
+        return dataProvider.size();
+    }
+
+    /**
+     * Load the given range of items into the cache in the background, unless
+     * it is cached or loading already.
+     *
+     * @see PagePrefetcher#prefetch(int, int)
+     *
+     * @param offset the index of the first item to load, starting from 0
+     * @param limit the maximum number of items to load
+     */
+    public void prefetch(int offset, int limit) {
+        RangeCache rangeCache = getRangeCache();
+        if (rangeCache == null) {
+            return;
+        }
+
+        String rangeKey = getRangeKey(offset, limit);
+        if (rangeCache.get(rangeKey, timeToLive) != null
+            || !rangeCache.startLoading(rangeKey)) {
+            return;
+        }
+        // The background thread has no Context to look up the log service
+        PrefetchTask task = new PrefetchTask(this, offset, limit, rangeCache,
+            rangeKey, ClickUtils.getLogService());
+        try {
+            getExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            task.discard();
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Return the range cache of the current session, or null if there is no
+     * current request or session. A session is not created.
+     *
+     * @return the range cache of the current session, or null
+     */
+    private RangeCache getRangeCache() {
+        if (!Context.hasThreadLocalContext()) {
+            return null;
+        }
+        HttpSession session =
+            Context.getThreadLocalContext().getRequest().getSession(false);
+        if (session == null) {
+            return null;
+        }
+        RangeCache rangeCache = (RangeCache) session.getAttribute(RANGE_CACHE_ATTRIBUTE);
+        if (rangeCache != null) {
+            return rangeCache;
+        }
+
+        // Only concurrent requests of the same session wait for each other
+        synchronized (session) {
+            rangeCache = (RangeCache) session.getAttribute(RANGE_CACHE_ATTRIBUTE);
+            if (rangeCache == null) {
+                rangeCache = new RangeCache();
+                session.setAttribute(RANGE_CACHE_ATTRIBUTE, rangeCache);
+            }
+            return rangeCache;
+        }
+    }
+
+    /**
+     * Return the given range of items of the decorated data provider.
+     *
+     * @param offset the index of the first item to return, starting from 0
+     * @param limit the maximum number of items to return
+     * @return the given range of items
+     */
+    private List<T> fetch(int offset, int limit) {
+        return toList(dataProvider.getData(offset, limit));
+    }
+
+    /**
+     * Return the cache key of the given range.
+     *
+     * @param offset the index of the first item of the range
+     * @param limit the maximum number of items of the range
+     * @return the cache key of the given range
+     */
+    private String getRangeKey(int offset, int limit) {
+        return key + ':' + offset + ':' + limit;
+    }
+
+    /**
+     * Return the given items as a list.
+     *
+     * @param items the items to return as a list
+     * @return the given items as a list
+     */
+    private List<T> toList(Iterable<T> items) {
+        List<T> list = new ArrayList<T>();
+        if (items != null) {
+            for (T item : items) {
+                list.add(item);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Return the default executor of the prefetches.
+     *
+     * @return the default executor of the prefetches
+     */
+    private static synchronized Executor getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_QUEUED_PREFETCHES),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "PrefetchingDataProvider");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new DiscardOldestPrefetchPolicy());
+        }
+        return defaultExecutor;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides the background load of a range into the range cache. The range
+     * stays marked as loading until the task ran or is discarded.
+     */
+    private static class PrefetchTask implements Runnable {
+
+        /** The data provider to load the range with. */
+        private final PrefetchingDataProvider<?> provider;
+
+        /** The index of the first item of the range. */
+        private final int offset;
+
+        /** The maximum number of items of the range. */
+        private final int limit;
+
+        /** The range cache to load the range into. */
+        private final RangeCache rangeCache;
+
+        /** The cache key of the range. */
+        private final String rangeKey;
+
+        /** The log service of the request which scheduled the task. */
+        private final LogService logService;
+
+        /**
+         * Create a PrefetchTask for the given range.
+         *
+         * @param provider the data provider to load the range with
+         * @param offset the index of the first item of the range
+         * @param limit the maximum number of items of the range
+         * @param rangeCache the range cache to load the range into
+         * @param rangeKey the cache key of the range
+         * @param logService the log service to log failures with
+         */
+        PrefetchTask(PrefetchingDataProvider<?> provider, int offset, int limit,
+            RangeCache rangeCache, String rangeKey, LogService logService) {
+            this.provider = provider;
+            this.offset = offset;
+            this.limit = limit;
+            this.rangeCache = rangeCache;
+            this.rangeKey = rangeKey;
+            this.logService = logService;
+        }
+
+        /**
+         * Load the range into the range cache.
+         *
+         * @see Runnable#run()
+         */
+        public void run() {
+            try {
+                rangeCache.put(rangeKey, provider.fetch(offset, limit));
+            } catch (RuntimeException e) {
+                // The range is fetched when requested
+                logService.error("Could not prefetch the range: " + rangeKey, e);
+            } finally {
+                rangeCache.stopLoading(rangeKey);
+            }
+        }
+
+        /**
+         * Discard the task without loading the range, so that the range can be
+         * prefetched again.
+         */
+        void discard() {
+            rangeCache.stopLoading(rangeKey);
+        }
+    }
+
+    /**
+     * Provides the rejection policy of the default executor: the oldest
+     * queued prefetch is discarded in favor of the new one, as prefetches of
+     * pages the user moved away from are least likely to be needed.
+     */
+    static class DiscardOldestPrefetchPolicy implements RejectedExecutionHandler {
+
+        /**
+         * Discard the oldest queued prefetch and retry the given prefetch, or
+         * discard the given prefetch if the executor is shut down.
+         *
+         * @see RejectedExecutionHandler#rejectedExecution(Runnable, ThreadPoolExecutor)
+         *
+         * @param runnable the rejected prefetch
+         * @param executor the executor which rejected the prefetch
+         */
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                discard(runnable);
+                return;
+            }
+            discard(executor.getQueue().poll());
+            executor.execute(runnable);
+        }
+
+        /**
+         * Discard the given prefetch, if it is one.
+         *
+         * @param runnable the prefetch to discard, or null
+         */
+        private void discard(Runnable runnable) {
+            if (runnable instanceof PrefetchTask) {
+                ((PrefetchTask) runnable).discard();
+            }
+        }
+    }
+
+    /**
+     * Provides the bounded, least recently used cache of item ranges of a
+     * session. The cached ranges are not serialized with the session.
+     */
+    private static class RangeCache implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The cached ranges by range key, in access order. */
+        private transient Map<String, Range> ranges;
+
+        /** The keys of the ranges which are loading. */
+        private transient Set<String> loadingKeys;
+
+        /**
+         * Return the items of the given range, or null if the range is not
+         * cached or expired.
+         *
+         * @param rangeKey the cache key of the range
+         * @param timeToLive the time in milliseconds a range is served
+         * @return the items of the given range, or null
+         */
+        @SuppressWarnings("unchecked")
+        synchronized <T> List<T> get(String rangeKey, long timeToLive) {
+            Range range = getRanges().get(rangeKey);
+            if (range == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - range.time >= timeToLive) {
+                getRanges().remove(rangeKey);
+                return null;
+            }
+            // The range key contains the data provider key, so the items
+            // were put by a data provider of the same item type
+            return (List<T>) range.items;
+        }
+
+        /**
+         * Cache the items of the given range.
+         *
+         * @param rangeKey the cache key of the range
+         * @param items the items of the range
+         */
+        synchronized void put(String rangeKey, List items) {
+            getRanges().put(rangeKey, new Range(items, System.currentTimeMillis()));
+        }
+
+        /**
+         * Mark the given range as loading.
+         *
+         * @param rangeKey the cache key of the range
+         * @return true if the range was not loading already
+         */
+        synchronized boolean startLoading(String rangeKey) {
+            if (loadingKeys == null) {
+                loadingKeys = new HashSet<String>();
+            }
+            return loadingKeys.add(rangeKey);
+        }
+
+        /**
+         * Mark the given range as loaded.
+         *
+         * @param rangeKey the cache key of the range
+         */
+        synchronized void stopLoading(String rangeKey) {
+            if (loadingKeys != null) {
+                loadingKeys.remove(rangeKey);
+            }
+        }
+
+        /**
+         * Return the cached ranges, creating the map if needed.
+         *
+         * @return the cached ranges
+         */
+        private Map<String, Range> getRanges() {
+            if (ranges == null) {
+                ranges = new LinkedHashMap<String, Range>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Range> eldest) {
+                        return size() > MAX_CACHED_RANGES;
+                    }
+                };
+            }
+            return ranges;
+        }
+    }
+
+    /**
+     * Provides a cached range of items.
+     */
+    private static class Range {
+
+        /** The items of the range. */
+        final List items;
+
+        /** The time the items were fetched. */
+        final long time;
+
+        /**
+         * Create a cached range.
+         *
+         * @param items the items of the range
+         * @param time the time the items were fetched
+         */
+        Range(List items, long time) {
+            this.items = items;
+            this.time = time;
+        }
+    }
+}
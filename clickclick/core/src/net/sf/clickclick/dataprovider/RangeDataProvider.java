@@ -0,0 +1,68 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.dataprovider;
+
+import org.apache.click.dataprovider.DataProvider;
+
+/**
+ * Provides a DataProvider which can return a range of its data, so that only
+ * the items of the current page are fetched from the backing store.
+ * <p/>
+ * When a {@link net.sf.clickclick.control.repeater.Repeater} renders a window
+ * of items, for example the current page of a
+ * {@link net.sf.clickclick.control.paginator.SimplePaginator}, it invokes
+ * {@link #size()} for the total number of items and
+ * {@link #getData(int, int)} for the items in the window, instead of
+ * {@link #getData()}.
+ * <p/>
+ * For example:
+ *
+ * <pre class="prettyprint">
+ * repeater.setMaxItems(10);
+ * repeater.setPaginator(paginator);
+ * repeater.setDataProvider(new RangeDataProvider() {
+ *
+ *     public List getData() {
+ *         return getCustomerService().getCustomers();
+ *     }
+ *
+ *     public List getData(int offset, int limit) {
+ *         return getCustomerService().getCustomers(offset, limit);
+ *     }
+ *
+ *     public int size() {
+ *         return getCustomerService().getNumberOfCustomers();
+ *     }
+ * }); </pre>
+ *
+ * @param <T> the type of the data items
+ */
+public interface RangeDataProvider<T> extends DataProvider<T> {
+
+    /**
+     * Return at most <tt>limit</tt> items, starting at the given offset.
+     *
+     * @param offset the index of the first item to return, starting from 0
+     * @param limit the maximum number of items to return
+     * @return the items in the given range
+     */
+    public Iterable<T> getData(int offset, int limit);
+
+    /**
+     * Return the total number of items represented by this DataProvider.
+     *
+     * @return the total number of items represented by this DataProvider
+     */
+    public int size();
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.reload;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides a thread-safe, in-memory cache of class file bytes.
+ * <p/>
+ * Class files are cached by their source: a class file, or a jar and the path
+ * of the class inside the jar. Every entry records the modification time and
+ * size of its source when the bytes were read, and is only returned while the
+ * source still has the same modification time and size.
+ * <p/>
+ * The cache is filled by the {@link ClasspathScanner} in the background, and
+ * by the {@link ReloadClassLoader} when it has to read a class file itself.
+ */
+public class BytecodeCache {
+
+    // -------------------------------------------------------------- Variables
+
+    /** The cached class files by key. */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return the cached bytes of the given class file, or null if the class
+     * file is not cached or its source changed since it was cached.
+     *
+     * @param source the class file, or the jar containing the class file
+     * @param path the path of the class file inside the jar, or null if the
+     * source is the class file itself
+     * @param lastModified the current modification time of the source
+     * @param length the current size of the source
+     * @return the cached bytes of the class file, or null
+     */
+    public byte[] get(File source, String path, long lastModified, long length) {
+        Entry entry = entries.get(getKey(source, path));
+        if (entry == null || entry.lastModified != lastModified
+            || entry.length != length) {
+            return null;
+        }
+        return entry.bytes;
+    }
+
+    /**
+     * Cache the bytes of the given class file.
+     *
+     * @param source the class file, or the jar containing the class file
+     * @param path the path of the class file inside the jar, or null if the
+     * source is the class file itself
+     * @param lastModified the modification time of the source when the bytes
+     * were read
+     * @param length the size of the source when the bytes were read
+     * @param bytes the class file bytes
+     */
+    public void put(File source, String path, long lastModified, long length,
+        byte[] bytes) {
+        entries.put(getKey(source, path), new Entry(source, lastModified, length, bytes));
+    }
+
+    /**
+     * Return true if the given class file is cached for the given source
+     * modification time and size.
+     *
+     * @param source the class file, or the jar containing the class file
+     * @param path the path of the class file inside the jar, or null if the
+     * source is the class file itself
+     * @param lastModified the modification time of the source
+     * @param length the size of the source
+     * @return true if the given class file is cached
+     */
+    public boolean contains(File source, String path, long lastModified, long length) {
+        return get(source, path, lastModified, length) != null;
+    }
+
+    /**
+     * Remove the given class file from the cache.
+     *
+     * @param source the class file, or the jar containing the class file
+     * @param path the path of the class file inside the jar, or null if the
+     * source is the class file itself
+     */
+    public void remove(File source, String path) {
+        entries.remove(getKey(source, path));
+    }
+
+    /**
+     * Remove the class files which source was deleted or changed since they
+     * were cached.
+     *
+     * @return the number of removed class files
+     */
+    public int removeStale() {
+        // Sources are checked once, a jar is the source of many class files
+        Map<File, long[]> sourceStates = new HashMap<File, long[]>();
+        int removed = 0;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            long[] state = sourceStates.get(entry.source);
+            if (state == null) {
+                File source = entry.source;
+                state = source.exists()
+                    ? new long[] { source.lastModified(), source.length() }
+                    : new long[] { -1, -1 };
+                sourceStates.put(source, state);
+            }
+            if (state[0] != entry.lastModified || state[1] != entry.length) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all class files from the cache.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Return the number of cached class files.
+     *
+     * @return the number of cached class files
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Return the cache key of the given class file.
+     *
+     * @param source the class file, or the jar containing the class file
+     * @param path the path of the class file inside the jar, or null
+     * @return the cache key of the given class file
+     */
+    private String getKey(File source, String path) {
+        if (path == null) {
+            return source.getAbsolutePath();
+        }
+        return source.getAbsolutePath() + "!/" + path;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides a cached class file.
+     */
+    private static class Entry {
+
+        /** The class file, or the jar containing the class file. */
+        final File source;
+
+        /** The modification time of the source when the bytes were read. */
+        final long lastModified;
+
+        /** The size of the source when the bytes were read. */
+        final long length;
+
+        /** The class file bytes. */
+        final byte[] bytes;
+
+        /**
+         * Create a cache entry.
+         *
+         * @param source the class file, or the jar containing the class file
+         * @param lastModified the modification time of the source
+         * @param length the size of the source
+         * @param bytes the class file bytes
+         */
+        Entry(File source, long lastModified, long length, byte[] bytes) {
+            this.source = source;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.reload;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads the names of the classes referenced by a class file.
+ * <p/>
+ * The references are read from the class file constant pool: class entries,
+ * and the class types of field and method descriptors and generic signatures.
+ * Every UTF8 entry which contains a <tt>';'</tt> is tokenized as a descriptor
+ * or signature, and ignored if it is not a valid one. String constants which
+ * happen to be valid descriptors are also included, which can only add extra
+ * dependencies.
+ */
+class ClassDependencyReader {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The class file magic number. */
+    private static final int MAGIC = 0xCAFEBABE;
+
+    // Constant pool tags
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Prevent instantiation.
+     */
+    private ClassDependencyReader() {
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return the binary names of the classes referenced by the given class
+     * file, for example <tt>"com.mycorp.page.HomePage"</tt>.
+     *
+     * @param bytes the class file bytes
+     * @return the names of the classes referenced by the given class file
+     * @throws IOException if the bytes are not a valid class file
+     */
+    static Set<String> read(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Invalid class file");
+        }
+        // Skip minor and major version
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        int[] classIndexes = new int[count];
+        int classCount = 0;
+
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case UTF8:
+                    utf8[i] = in.readUTF();
+                    break;
+                case CLASS:
+                    classIndexes[classCount++] = in.readUnsignedShort();
+                    break;
+                case STRING:
+                case METHOD_TYPE:
+                case MODULE:
+                case PACKAGE:
+                    in.readUnsignedShort();
+                    break;
+                case METHOD_HANDLE:
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                case INTEGER:
+                case FLOAT:
+                case FIELD_REF:
+                case METHOD_REF:
+                case INTERFACE_METHOD_REF:
+                case NAME_AND_TYPE:
+                case DYNAMIC:
+                case INVOKE_DYNAMIC:
+                    in.readInt();
+                    break;
+                case LONG:
+                case DOUBLE:
+                    in.readLong();
+                    // Long and double entries take two slots
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Invalid constant pool tag " + tag);
+            }
+        }
+
+        Set<String> result = new HashSet<String>();
+        for (int i = 0; i < classCount; i++) {
+            String name = utf8[classIndexes[i]];
+            if (name == null) {
+                continue;
+            }
+            if (name.startsWith("[")) {
+                addDescriptorClasses(name, result);
+            } else {
+                result.add(name.replace('/', '.'));
+            }
+        }
+        for (int i = 1; i < count; i++) {
+            if (utf8[i] != null && utf8[i].indexOf(';') >= 0) {
+                addDescriptorClasses(utf8[i], result);
+            }
+        }
+        return result;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Add the class types of the given descriptor or signature to the given
+     * set. Nothing is added if the string is not a valid descriptor or
+     * signature.
+     *
+     * @param descriptor the descriptor or signature
+     * @param result the set to add the class names to
+     */
+    private static void addDescriptorClasses(String descriptor, Set<String> result) {
+        DescriptorParser parser = new DescriptorParser(descriptor);
+        if (parser.parse()) {
+            result.addAll(parser.classNames);
+        }
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides a parser of field and method descriptors and of class, field
+     * and method signatures, which collects the class names they reference.
+     * See the Java Virtual Machine Specification sections 4.3 and 4.7.9.1.
+     */
+    private static class DescriptorParser {
+
+        /** The descriptor or signature to parse. */
+        private final String text;
+
+        /** The class names referenced by the descriptor or signature. */
+        final Set<String> classNames = new HashSet<String>();
+
+        /** The index of the next character to parse. */
+        private int pos;
+
+        /**
+         * Create a parser of the given descriptor or signature.
+         *
+         * @param text the descriptor or signature to parse
+         */
+        DescriptorParser(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Parse the descriptor or signature.
+         *
+         * @return true if the text is a valid descriptor or signature
+         */
+        boolean parse() {
+            try {
+                if (peek() == '<') {
+                    parseTypeParameters();
+                }
+                if (peek() == '(') {
+                    parseMethodRest();
+                } else {
+                    // A field type, or a class signature's superclass and
+                    // superinterfaces
+                    parseType();
+                    while (pos < text.length()) {
+                        expect('L');
+                        parseClassTypeRest();
+                    }
+                }
+                return pos == text.length();
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Parse the parameter types, return type and thrown types of a
+         * method descriptor or signature.
+         */
+        private void parseMethodRest() {
+            expect('(');
+            while (peek() != ')') {
+                parseType();
+            }
+            expect(')');
+            if (peek() == 'V') {
+                pos++;
+            } else {
+                parseType();
+            }
+            while (pos < text.length() && peek() == '^') {
+                pos++;
+                char c = next();
+                if (c == 'L') {
+                    parseClassTypeRest();
+                } else if (c == 'T') {
+                    parseIdentifier(';');
+                    expect(';');
+                } else {
+                    throw new IllegalArgumentException();
+                }
+            }
+        }
+
+        /**
+         * Parse a base type, class type, type variable or array type.
+         */
+        private void parseType() {
+            char c = next();
+            switch (c) {
+                case 'B':
+                case 'C':
+                case 'D':
+                case 'F':
+                case 'I':
+                case 'J':
+                case 'S':
+                case 'Z':
+                    return;
+                case 'L':
+                    parseClassTypeRest();
+                    return;
+                case 'T':
+                    parseIdentifier(';');
+                    expect(';');
+                    return;
+                case '[':
+                    parseType();
+                    return;
+                default:
+                    throw new IllegalArgumentException();
+            }
+        }
+
+        /**
+         * Parse a class type following its <tt>'L'</tt>, including its type
+         * arguments and inner class types, up to and including the
+         * <tt>';'</tt>.
+         */
+        private void parseClassTypeRest() {
+            String name = parseIdentifier('/');
+            classNames.add(name);
+            while (true) {
+                if (peek() == '<') {
+                    parseTypeArguments();
+                }
+                char c = next();
+                if (c == ';') {
+                    return;
+                } else if (c == '.') {
+                    name = name + '$' + parseIdentifier(';');
+                    classNames.add(name);
+                } else {
+                    throw new IllegalArgumentException();
+                }
+            }
+        }
+
+        /**
+         * Parse type arguments, for example <tt>"&lt;+TT;*&gt;"</tt>.
+         */
+        private void parseTypeArguments() {
+            expect('<');
+            do {
+                char c = peek();
+                if (c == '*') {
+                    pos++;
+                    continue;
+                }
+                if (c == '+' || c == '-') {
+                    pos++;
+                }
+                parseReferenceType();
+            } while (peek() != '>');
+            pos++;
+        }
+
+        /**
+         * Parse type parameters, for example
+         * <tt>"&lt;T:Ljava/lang/Object;U::Ljava/lang/Comparable&lt;TT;&gt;;&gt;"</tt>.
+         */
+        private void parseTypeParameters() {
+            expect('<');
+            do {
+                parseIdentifier(';');
+                expect(':');
+                // The class bound is optional, interface bounds follow
+                char c = peek();
+                if (c == 'L' || c == 'T' || c == '[') {
+                    parseReferenceType();
+                }
+                while (peek() == ':') {
+                    pos++;
+                    parseReferenceType();
+                }
+            } while (peek() != '>');
+            pos++;
+        }
+
+        /**
+         * Parse a class type, type variable or array type.
+         */
+        private void parseReferenceType() {
+            char c = peek();
+            if (c != 'L' && c != 'T' && c != '[') {
+                throw new IllegalArgumentException();
+            }
+            parseType();
+        }
+
+        /**
+         * Parse an identifier, which ends at one of <tt>'.'</tt>,
+         * <tt>';'</tt>, <tt>'['</tt>, <tt>'&lt;'</tt>, <tt>'&gt;'</tt> or
+         * <tt>':'</tt>.
+         *
+         * @param separator <tt>'/'</tt> if the identifier is a binary class
+         * name, in which case slashes are replaced by dots
+         * @return the identifier
+         */
+        private String parseIdentifier(char separator) {
+            int start = pos;
+            while (pos < text.length() && ".;[<>:".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            if (pos == start) {
+                throw new IllegalArgumentException();
+            }
+            String identifier = text.substring(start, pos);
+            if (separator == '/') {
+                if (identifier.startsWith("/") || identifier.endsWith("/")) {
+                    throw new IllegalArgumentException();
+                }
+                return identifier.replace('/', '.');
+            }
+            if (identifier.indexOf('/') >= 0) {
+                throw new IllegalArgumentException();
+            }
+            return identifier;
+        }
+
+        /**
+         * Return the next character without consuming it.
+         *
+         * @return the next character
+         */
+        private char peek() {
+            if (pos >= text.length()) {
+                throw new IllegalArgumentException();
+            }
+            return text.charAt(pos);
+        }
+
+        /**
+         * Consume and return the next character.
+         *
+         * @return the next character
+         */
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        /**
+         * Consume the next character, which must be the given character.
+         *
+         * @param c the expected character
+         */
+        private void expect(char c) {
+            if (next() != c) {
+                throw new IllegalArgumentException();
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.reload;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detects changes to the class files and jars of a classpath.
+ * <p/>
+ * The monitor keeps a fingerprint of the modification time and size of every
+ * class file in the classpath directories, and of every jar in the classpath.
+ * {@link #isModified()} recalculates the fingerprint, at most once per
+ * {@link #getCheckInterval() check interval}, and returns true if it changed
+ * since the previous check.
+ * <p/>
+ * Only <tt>file:</tt> URLs are monitored. Other URLs, such as jars served by
+ * the servlet container, are ignored.
+ */
+public class ClasspathMonitor {
+
+    // -------------------------------------------------------------- Variables
+
+    /** The monitored classpath directories and jars. */
+    private final File[] files;
+
+    /** The minimum time in milliseconds between two checks. */
+    private long checkInterval;
+
+    /** The fingerprint of the last check. */
+    private long fingerprint;
+
+    /** The time of the last check. */
+    private long lastCheck;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create a ClasspathMonitor for the given classpath. The initial
+     * fingerprint is taken when the monitor is created.
+     *
+     * @param classpath the classpath to monitor
+     * @param checkInterval the minimum time in milliseconds between two checks
+     */
+    public ClasspathMonitor(URL[] classpath, long checkInterval) {
+        List<File> fileList = new ArrayList<File>();
+        for (int i = 0; i < classpath.length; i++) {
+            URL url = classpath[i];
+            if (url != null && "file".equals(url.getProtocol())) {
+                fileList.add(toFile(url));
+            }
+        }
+        this.files = fileList.toArray(new File[fileList.size()]);
+        this.checkInterval = checkInterval;
+        this.fingerprint = calculateFingerprint();
+        this.lastCheck = System.currentTimeMillis();
+    }
+
+    // ------------------------------------------------------ Public Properties
+
+    /**
+     * Return the minimum time in milliseconds between two checks.
+     *
+     * @return the minimum time in milliseconds between two checks
+     */
+    public long getCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * Set the minimum time in milliseconds between two checks.
+     *
+     * @param checkInterval the minimum time in milliseconds between two checks
+     */
+    public void setCheckInterval(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return true if a class file or jar changed since the previous check.
+     * If the check interval has not elapsed since the previous check, this
+     * method returns false without checking.
+     *
+     * @return true if a class file or jar changed since the previous check
+     */
+    public synchronized boolean isModified() {
+        long now = System.currentTimeMillis();
+        if (now - lastCheck < checkInterval) {
+            return false;
+        }
+        lastCheck = now;
+        return checkModified();
+    }
+
+    // ------------------------------------------------------ Protected Methods
+
+    /**
+     * Return the monitored classpath directories and jars.
+     *
+     * @return the monitored classpath directories and jars
+     */
+    protected File[] getFiles() {
+        return files;
+    }
+
+    /**
+     * Recalculate the fingerprint, regardless of the check interval, and
+     * return true if it changed since the previous check.
+     *
+     * @return true if a class file or jar changed since the previous check
+     */
+    protected synchronized boolean checkModified() {
+        long newFingerprint = calculateFingerprint();
+        if (newFingerprint == fingerprint) {
+            return false;
+        }
+        fingerprint = newFingerprint;
+        return true;
+    }
+
+    /**
+     * Return the fingerprint of the monitored class files and jars.
+     *
+     * @return the fingerprint of the monitored class files and jars
+     */
+    protected long calculateFingerprint() {
+        long result = 17;
+        for (int i = 0; i < files.length; i++) {
+            result = fingerprint(files[i], result);
+        }
+        return result;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Add the given file, or the class files in the given directory, to the
+     * given fingerprint.
+     *
+     * @param file the file or directory to add
+     * @param result the fingerprint to add the file to
+     * @return the new fingerprint
+     */
+    private long fingerprint(File file, long result) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (int i = 0; i < children.length; i++) {
+                    result = fingerprint(children[i], result);
+                }
+            }
+            return result;
+        }
+
+        String name = file.getName();
+        if (name.endsWith(".class") || name.endsWith(".jar")) {
+            result = result * 31 + file.getPath().hashCode();
+            result = result * 31 + file.lastModified();
+            result = result * 31 + file.length();
+        }
+        return result;
+    }
+
+    /**
+     * Return the File of the given file URL.
+     *
+     * @param url the file URL
+     * @return the File of the given file URL
+     */
+    private File toFile(URL url) {
+        try {
+            return new File(url.toURI());
+        } catch (Exception e) {
+            return new File(url.getPath());
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.reload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Detects changes to the class files and jars of a classpath in a background
+ * thread, and reads the changed class files into a {@link BytecodeCache}.
+ * <p/>
+ * Once {@link #start() started}, the scanner checks the classpath fingerprint
+ * every {@link #getCheckInterval() check interval}. The first pass reads all
+ * the reloadable class files. Later passes only walk the classpath again, and
+ * read the class files which changed, when the fingerprint changed. Cached
+ * class files which were deleted or changed are then removed from the cache.
+ * A class file is reloadable if it matches the given includes and not the
+ * given excludes, the same way as {@link ReloadClassLoader}.
+ * <p/>
+ * {@link #isModified()} does not access the file system while the scanner
+ * runs: it returns true once after the background thread detected a change,
+ * by which time the changed class files are already cached. If the scanner is
+ * not running, {@link #isModified()} checks the classpath itself like
+ * {@link ClasspathMonitor}.
+ */
+public class ClasspathScanner extends ClasspathMonitor {
+
+    // -------------------------------------------------------------- Variables
+
+    /** The cache to read the class files into. */
+    private final BytecodeCache bytecodeCache;
+
+    /** The classes and packages to read. */
+    private final PrefixMatcher includeMatcher;
+
+    /** The classes and packages not to read. */
+    private final PrefixMatcher excludeMatcher;
+
+    /** The background thread, or null if the scanner is not running. */
+    private Thread thread;
+
+    /** Indicates if a change was detected since the last call to isModified. */
+    private volatile boolean modified;
+
+    /**
+     * Indicates if the class files were read by a complete pass, so the next
+     * pass only walks the classpath if it changed.
+     */
+    private boolean scanned;
+
+    /** Indicates if a class file or jar of the current pass failed to read. */
+    private boolean readFailed;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create a ClasspathScanner for the given classpath, which reads the
+     * reloadable class files into the given cache.
+     *
+     * @param classpath the classpath to monitor
+     * @param checkInterval the time in milliseconds between two checks
+     * @param bytecodeCache the cache to read the class files into
+     * @param includes the classes and packages to read
+     * @param excludes the classes and packages not to read
+     */
+    public ClasspathScanner(URL[] classpath, long checkInterval,
+        BytecodeCache bytecodeCache, List<String> includes, List<String> excludes) {
+        super(classpath, checkInterval);
+        if (bytecodeCache == null) {
+            throw new IllegalArgumentException("Null bytecodeCache parameter");
+        }
+        this.bytecodeCache = bytecodeCache;
+        this.includeMatcher = new PrefixMatcher(includes);
+        this.excludeMatcher = new PrefixMatcher(excludes);
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Start the background thread. The thread is a daemon thread, so it does
+     * not prevent the JVM from exiting.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread("ReloadClassFilter classpath scanner") {
+            @Override
+            public void run() {
+                runScanner(this);
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the background thread.
+     */
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Return true if the background thread is running.
+     *
+     * @return true if the background thread is running
+     */
+    public synchronized boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Return true if a class file or jar changed since the previous call.
+     * While the scanner is running, this method only reads the flag set by
+     * {@link #scan()}.
+     *
+     * @return true if a class file or jar changed since the previous call
+     */
+    @Override
+    public boolean isModified() {
+        if (modified) {
+            modified = false;
+            return true;
+        }
+        if (!isRunning()) {
+            return super.isModified();
+        }
+        return false;
+    }
+
+    /**
+     * Check the classpath and, on the first pass or if the classpath changed,
+     * read the reloadable class files which are not cached yet and remove the
+     * deleted or changed class files from the cache. The background thread
+     * invokes this method every check interval.
+     */
+    public synchronized void scan() {
+        boolean changed = checkModified();
+        if (!changed && scanned) {
+            return;
+        }
+
+        readFailed = false;
+        File[] files = getFiles();
+        for (int i = 0; i < files.length; i++) {
+            File file = files[i];
+            if (file.isDirectory()) {
+                scanDirectory(file, "");
+            } else if (file.getName().endsWith(".jar")) {
+                scanJar(file);
+            }
+        }
+
+        if (changed) {
+            bytecodeCache.removeStale();
+        }
+        // Walk again on the next pass if a file changed while it was read
+        scanned = !readFailed;
+
+        // Flag the change after the class files are cached
+        if (changed) {
+            modified = true;
+        }
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Scan the classpath every check interval until the given thread is
+     * stopped.
+     *
+     * @param current the background thread
+     */
+    private void runScanner(Thread current) {
+        while (!current.isInterrupted()) {
+            try {
+                scan();
+            } catch (Exception e) {
+                // Keep scanning, the class loader reads unreadable files itself
+            }
+            try {
+                Thread.sleep(Math.max(getCheckInterval(), 1));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Read the reloadable class files of the given directory which are not
+     * cached yet.
+     *
+     * @param directory the directory to scan
+     * @param packagePrefix the package of the directory, for example
+     * <tt>"com.mycorp."</tt>
+     */
+    private void scanDirectory(File directory, String packagePrefix) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (int i = 0; i < children.length; i++) {
+            File child = children[i];
+            String name = child.getName();
+            if (child.isDirectory()) {
+                scanDirectory(child, packagePrefix + name + ".");
+
+            } else if (name.endsWith(".class")) {
+                String className = packagePrefix
+                    + name.substring(0, name.length() - ".class".length());
+                if (!isReloadable(className)) {
+                    continue;
+                }
+                long lastModified = child.lastModified();
+                long length = child.length();
+                if (bytecodeCache.contains(child, null, lastModified, length)) {
+                    continue;
+                }
+                try {
+                    InputStream in = new FileInputStream(child);
+                    try {
+                        bytecodeCache.put(child, null, lastModified, length, read(in));
+                    } finally {
+                        in.close();
+                    }
+                } catch (IOException e) {
+                    // Changed while reading, read again on the next pass
+                    bytecodeCache.remove(child, null);
+                    readFailed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the reloadable class files of the given jar which are not cached
+     * yet.
+     *
+     * @param jar the jar to scan
+     */
+    private void scanJar(File jar) {
+        long lastModified = jar.lastModified();
+        long length = jar.length();
+        JarFile jarFile = null;
+        try {
+            jarFile = new JarFile(jar);
+            for (Enumeration<JarEntry> en = jarFile.entries(); en.hasMoreElements();) {
+                JarEntry entry = en.nextElement();
+                String path = entry.getName();
+                if (entry.isDirectory() || !path.endsWith(".class")) {
+                    continue;
+                }
+                String className = path.substring(0,
+                    path.length() - ".class".length()).replace('/', '.');
+                if (!isReloadable(className)
+                    || bytecodeCache.contains(jar, path, lastModified, length)) {
+                    continue;
+                }
+                InputStream in = jarFile.getInputStream(entry);
+                try {
+                    bytecodeCache.put(jar, path, lastModified, length, read(in));
+                } finally {
+                    in.close();
+                }
+            }
+        } catch (IOException e) {
+            // Changed while reading, read again on the next pass
+            readFailed = true;
+        } finally {
+            if (jarFile != null) {
+                try {
+                    jarFile.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Return true if the given class matches the includes and not the
+     * excludes.
+     *
+     * @param className the binary name of the class
+     * @return true if the given class is reloadable
+     */
+    private boolean isReloadable(String className) {
+        return !excludeMatcher.matches(className)
+            && includeMatcher.matches(className);
+    }
+
+    /**
+     * Return the bytes of the given stream.
+     *
+     * @param in the stream to read
+     * @return the bytes of the given stream
+     * @throws IOException if the stream cannot be read
+     */
+    private byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.reload;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Provides a sorted list of prefixes which finds a matching prefix of a
+ * name with a binary search.
+ * <p/>
+ * Prefixes which start with another prefix are redundant and removed. In
+ * the remaining sorted list, the only prefix which can match a name is the
+ * greatest prefix less than or equal to the name.
+ */
+class PrefixMatcher {
+
+    // -------------------------------------------------------------- Variables
+
+    /** The sorted prefixes, of which none starts with another. */
+    private final String[] prefixes;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create a PrefixMatcher for the given prefixes.
+     *
+     * @param prefixList the prefixes to match
+     */
+    PrefixMatcher(List<String> prefixList) {
+        String[] sorted = prefixList.toArray(new String[prefixList.size()]);
+        Arrays.sort(sorted);
+
+        // A prefix sorts directly before the strings it is a prefix of
+        List<String> result = new ArrayList<String>();
+        String last = null;
+        for (int i = 0; i < sorted.length; i++) {
+            if (last == null || !sorted[i].startsWith(last)) {
+                last = sorted[i];
+                result.add(last);
+            }
+        }
+        prefixes = result.toArray(new String[result.size()]);
+    }
+
+    // ------------------------------------------------ Package Private Methods
+
+    /**
+     * Return true if the given name starts with one of the prefixes.
+     *
+     * @param name the name to match
+     * @return true if the given name starts with one of the prefixes
+     */
+    boolean matches(String name) {
+        int index = Arrays.binarySearch(prefixes, name);
+        if (index >= 0) {
+            return true;
+        }
+        int floor = -index - 2;
+        return floor >= 0 && name.startsWith(prefixes[floor]);
+    }
+}
@@ -14,15 +14,17 @@
 package net.sf.clickclick.reload;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -30,6 +32,7 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import net.sf.clickclick.util.PropertyAccessor;
 import org.apache.click.service.ClickClickConfigService;
 import org.apache.click.service.ConfigService;
 import org.apache.click.util.ClickUtils;
@@ -48,6 +51,24 @@ import org.apache.click.util.ClickUtils;
  * This feature is made possible by replacing the context class loader 
  * with an instance of {@link ReloadClassLoader} for each incoming request.
  * <p/>
+ * The same ReloadClassLoader is used for all requests until a class file or
+ * jar on the classpath changes. Changes are detected by a background
+ * {@link ClasspathScanner}, every 'checkInterval' milliseconds (1000 by
+ * default). The scanner reads the reloadable class files into a
+ * {@link BytecodeCache} before it reports a change, so reloading classes does
+ * not block requests on file I/O. When a change is detected, a new ReloadClassLoader is
+ * created for new requests, while requests in progress complete with the
+ * ReloadClassLoader they started with. The new ReloadClassLoader inherits the
+ * classes which are not affected by the changes, so only changed classes and
+ * the classes referencing them are reloaded.
+ * <p/>
+ * <h3>Metrics</h3>
+ * The filter collects {@link ReloadMetrics}, such as the number of classes
+ * reloaded and the time spent loading them. The metrics are registered as the
+ * JMX MBean <tt>net.sf.clickclick.reload:type=ReloadMetrics,name=&lt;filter-name&gt;</tt>,
+ * unless the initialization parameter 'jmx' is <tt>false</tt>. They can also
+ * be viewed by mapping the {@link ReloadMetricsPage} in click.xml.
+ * <p/>
  * <h3>Configuration</h3>
  * By default ReloadClassLoader only reloads classes inside packages specified
  * by the Page packages in click.xml.
@@ -103,6 +124,10 @@ import org.apache.click.util.ClickUtils;
  *               com.mycorp.page.account, com.mycorp.page.MyStatefulPage
  *           &lt;/param-value&gt;
  *       &lt;/init-param&gt;
+ *       &lt;init-param&gt;
+ *           &lt;param-name&gt;checkInterval&lt;/param-name&gt;
+ *           &lt;param-value&gt;2000&lt;/param-value&gt;
+ *       &lt;/init-param&gt;
  *     &lt;/filter&gt;
  *
  *     &lt;filter-mapping&gt;
@@ -152,20 +177,46 @@ public class ReloadClassFilter implements Filter {
 
     private static final String CLASSPATH = "classpath";
 
+    private static final String CHECK_INTERVAL = "checkInterval";
+
+    private static final String JMX = "jmx";
+
     // -------------------------------------------------------- Variables
 
     /** The application configuration service. */
     protected ClickClickConfigService clickClickConfigService;
 
-    private ClassLoader reloadClassLoader = null;
+    /** The ReloadClassLoader used for new requests. */
+    private volatile ReloadClassLoader reloadClassLoader = null;
+
+    /** The lock guarding the creation and swap of the ReloadClassLoader. */
+    private final Object reloadLock = new Object();
+
+    /**
+     * The monitor which detects classpath changes, set before the first
+     * ReloadClassLoader is published.
+     */
+    private volatile ClasspathMonitor classpathMonitor;
+
+    /** The class file bytes shared by all ReloadClassLoader generations. */
+    private final BytecodeCache bytecodeCache = new BytecodeCache();
+
+    /** The metrics of this filter. */
+    private final ReloadMetrics metrics = new ReloadMetrics();
+
+    /** The JMX name of the {@link #metrics}, or null if not registered. */
+    private ObjectName metricsName;
+
+    /** The minimum time in milliseconds between two classpath checks. */
+    private long checkInterval = 1000;
 
     private URL[] classpath = null;
 
-    private List includeList = new ArrayList();
+    private List<String> includeList = new ArrayList<String>();
 
-    private List excludeList = new ArrayList();
+    private List<String> excludeList = new ArrayList<String>();
 
-    private List initialClasspath = new ArrayList();
+    private List<String> initialClasspath = new ArrayList<String>();
 
     /** The filter has been configured flag. */
     private boolean configured = false;
@@ -201,6 +252,17 @@ public class ReloadClassFilter implements Filter {
      * @see Filter#destroy()
      */
     public void destroy() {
+        unregisterMetrics();
+        if (filterConfig != null) {
+            filterConfig.getServletContext().removeAttribute(
+                ReloadMetrics.class.getName());
+        }
+        synchronized (reloadLock) {
+            if (classpathMonitor instanceof ClasspathScanner) {
+                ((ClasspathScanner) classpathMonitor).stop();
+            }
+            bytecodeCache.clear();
+        }
         this.filterConfig = null;
     }
 
@@ -243,6 +305,33 @@ public class ReloadClassFilter implements Filter {
                 initialClasspath.add(token);
             }
         }
+
+        // Extract the classpath check interval
+        String checkIntervalParam = filterConfig.getInitParameter(CHECK_INTERVAL);
+        if (checkIntervalParam != null) {
+            try {
+                checkInterval = Long.parseLong(checkIntervalParam.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + CHECK_INTERVAL
+                    + " value: " + checkIntervalParam);
+            }
+        }
+
+        // Publish the metrics
+        filterConfig.getServletContext().setAttribute(
+            ReloadMetrics.class.getName(), metrics);
+        if (!"false".equalsIgnoreCase(filterConfig.getInitParameter(JMX))) {
+            registerMetrics();
+        }
+    }
+
+    /**
+     * Return the metrics of this filter.
+     *
+     * @return the metrics of this filter
+     */
+    public ReloadMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -290,7 +379,9 @@ public class ReloadClassFilter implements Filter {
         clickClickConfigService = (ClickClickConfigService) configService;
 
         // Add default package to the package list
-        includeList.addAll(clickClickConfigService.getPagesPackage());
+        for (Object pagesPackage : clickClickConfigService.getPagesPackage()) {
+            includeList.add(pagesPackage.toString());
+        }
         configured = true;
 
         String message = "ReloadClassFilter initialized with: includes="
@@ -303,7 +394,7 @@ public class ReloadClassFilter implements Filter {
      * Handles the request in development modes.
      * <p/>
      * This method uses the ReloadClassLoader as returned by
-     * {@link #createReloadClassLoader()}.
+     * {@link #getReloadClassLoader()}.
      * 
      * @param request
      * @param response
@@ -312,18 +403,16 @@ public class ReloadClassFilter implements Filter {
     protected void handleRequest(ServletRequest request, ServletResponse response,
         FilterChain chain) throws IOException, ServletException {
 
-        // TODO should createReloadClassLoader be synchronized
-        //synchronized (lock) {
-        //    if(reloadClassLoader == null) {
-        reloadClassLoader = createReloadClassLoader();
-        //     }
-        //}
+        // The request keeps this loader even if classes change meanwhile
+        long start = System.nanoTime();
+        ClassLoader loader = getReloadClassLoader();
+        metrics.requestHandled(System.nanoTime() - start);
 
         // Grab hold of the current context class loader
         ClassLoader orig = Thread.currentThread().getContextClassLoader();
         try {
             // Set the new context class loader
-            Thread.currentThread().setContextClassLoader(reloadClassLoader);
+            Thread.currentThread().setContextClassLoader(loader);
             chain.doFilter(request, response);
         /*} catch (Throwable t) {
             while (t instanceof ServletException) {
@@ -338,6 +427,52 @@ public class ReloadClassFilter implements Filter {
         }
     }
 
+    /**
+     * Return the ReloadClassLoader for the current request. A new
+     * ReloadClassLoader is created through {@link #createReloadClassLoader()}
+     * for the first request, and whenever the {@link ClasspathScanner}
+     * detects that a class file or jar changed.
+     *
+     * @return the ReloadClassLoader for the current request
+     */
+    protected ReloadClassLoader getReloadClassLoader() {
+        // Requests only lock when the loader must be created or swapped
+        ReloadClassLoader current = reloadClassLoader;
+        if (current != null && !classpathMonitor.isModified()) {
+            return current;
+        }
+
+        synchronized (reloadLock) {
+            if (reloadClassLoader == null) {
+                ReloadClassLoader loader = createReloadClassLoader();
+                metrics.loaderCreated(0);
+                ClasspathScanner scanner = new ClasspathScanner(classpath,
+                    checkInterval, bytecodeCache, includeList, excludeList);
+                scanner.start();
+                classpathMonitor = scanner;
+                reloadClassLoader = loader;
+
+            } else if (reloadClassLoader == current) {
+                // Not swapped yet by a thread which saw the same change
+                ReloadClassLoader previous = reloadClassLoader;
+                ReloadClassLoader loader = createReloadClassLoader();
+
+                // Only classes affected by the changes are loaded again
+                int inherited = loader.inheritClasses(previous);
+                reloadClassLoader = loader;
+                metrics.loaderCreated(inherited);
+
+                // Cached accessors and pages reference classes of the previous loader
+                PropertyAccessor.clearCache();
+                getConfigService().invalidatePageCache();
+                getConfigService().getLogService().debug("ReloadClassFilter"
+                    + " detected classpath changes, created new ReloadClassLoader"
+                    + " inheriting " + inherited + " unchanged classes");
+            }
+            return reloadClassLoader;
+        }
+    }
+
     /**
      * Create and return a new ReloadClassLoader instance.
      *
@@ -345,18 +480,24 @@ public class ReloadClassFilter implements Filter {
      */
     protected ReloadClassLoader createReloadClassLoader() {
         ClassLoader parent = Thread.currentThread().getContextClassLoader();
-        classpath = getClasspath();
+
+        // The classpath does not change while the application runs
+        if (classpath == null) {
+            long start = System.nanoTime();
+            classpath = getClasspath();
+            metrics.classpathResolved(System.nanoTime() - start);
+        }
         ReloadClassLoader loader = new ReloadClassLoader(classpath, parent, clickClickConfigService);
+        loader.setBytecodeCache(bytecodeCache);
+        loader.setMetrics(metrics);
 
         // Add includes to class loader
-        for (Iterator it = includeList.iterator(); it.hasNext();) {
-            String include = (String) it.next();
+        for (String include : includeList) {
             loader.addInclude(include);
         }
 
         // Add excludes to class loader
-        for (Iterator it = excludeList.iterator(); it.hasNext();) {
-            String exclude = (String) it.next();
+        for (String exclude : excludeList) {
             loader.addExclude(exclude);
         }
         return loader;
@@ -368,7 +509,7 @@ public class ReloadClassFilter implements Filter {
      * @param path the path to add to the classpath
      * @param classpath the Set of classpath entries
      */
-    protected void addToClasspath(String path, Set classpath) {
+    protected void addToClasspath(String path, Set<URL> classpath) {
         try {
             File f = new File(path);
             if (f.exists()) {
@@ -390,23 +531,56 @@ public class ReloadClassFilter implements Filter {
 
     // -------------------------------------------------------- Private Methods
 
+    /**
+     * Register the {@link #metrics} with the platform MBeanServer. Failures
+     * are ignored, the metrics are still available to ReloadMetricsPage.
+     */
+    private void registerMetrics() {
+        try {
+            ObjectName name = new ObjectName("net.sf.clickclick.reload:type=ReloadMetrics,name="
+                + ObjectName.quote(filterConfig.getFilterName()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+                metricsName = name;
+            }
+        } catch (Exception e) {
+            filterConfig.getServletContext().log(
+                "ReloadClassFilter could not register ReloadMetrics MBean", e);
+        }
+    }
+
+    /**
+     * Unregister the {@link #metrics} from the platform MBeanServer.
+     */
+    private void unregisterMetrics() {
+        if (metricsName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+        } catch (Exception e) {
+            // Already unregistered
+        }
+        metricsName = null;
+    }
+
     private URL[] getClasspath() {
-        Set classpathSet = new LinkedHashSet();
-        for (Iterator it = initialClasspath.iterator(); it.hasNext();) {
-            String path = (String) it.next();
+        Set<URL> classpathSet = new LinkedHashSet<URL>();
+        for (String path : initialClasspath) {
             addToClasspath(path, classpathSet);
         }
         classpathSet.addAll(extractUrlList(Thread.currentThread().
             getContextClassLoader()));
-        return (URL[]) classpathSet.toArray(new URL[]{null});
+        return classpathSet.toArray(new URL[]{null});
     }
 
-    private List extractUrlList(ClassLoader cl) {
-        List urlList = new ArrayList();
+    private List<URL> extractUrlList(ClassLoader cl) {
+        List<URL> urlList = new ArrayList<URL>();
         try {
-            Enumeration en = cl.getResources("");
+            Enumeration<URL> en = cl.getResources("");
             while (en.hasMoreElements()) {
-                Object url = en.nextElement();
+                URL url = en.nextElement();
                 urlList.add(url);
             }
         } catch (IOException ex) {
@@ -15,10 +15,25 @@
  */
 package net.sf.clickclick.reload;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.click.service.ConfigService;
 
 /**
@@ -31,6 +46,21 @@ import org.apache.click.service.ConfigService;
  * In addition it can be configured to include and exclude specific classes
  * and packages.
  * <p/>
+ * <h3>Generations</h3>
+ * For every class it loads, the ClassLoader records the modification time and
+ * size of the class file (or jar) and the classes it references. When classes
+ * change, a new ReloadClassLoader can {@link #inheritClasses(net.sf.clickclick.reload.ReloadClassLoader) inherit}
+ * the classes of the previous one which are not affected by the change. A
+ * class is affected if its class file changed, or if it references an affected
+ * class. Only the affected classes are loaded again, the other classes keep
+ * their Class objects, including their static state.
+ * <p/>
+ * Once a ReloadClassLoader is superseded, classes it has not loaded yet are
+ * loaded by the current generation, so that all generations use the same
+ * classes. Generations only reference the current generation, not each
+ * other, so a superseded generation can be garbage collected once none of
+ * its classes are inherited or in use.
+ * <p/>
  * <b>NOTE:</b> This class was adapted and modified from the Apache Cocoon<br>
  * implementation https://svn.apache.org/repos/asf/cocoon/tags/cocoon-2.2/cocoon-bootstrap/cocoon-bootstrap-1.0.0-M1/src/main/java/org/apache/cocoon/classloader/DefaultClassLoader.java
  * <p>
@@ -52,9 +82,30 @@ public class ReloadClassLoader extends URLClassLoader {
     /** The list of classes and folders to be excluded from reloading. */
     private List<String> excludes = new ArrayList<String>();
 
+    /** The compiled {@link #includes}, or null if not compiled yet. */
+    private volatile PrefixMatcher includeMatcher;
+
+    /** The compiled {@link #excludes}, or null if not compiled yet. */
+    private volatile PrefixMatcher excludeMatcher;
+
+    /** The {@link #shouldLoadClass(java.lang.String)} decisions by class name. */
+    private final Map<String, Boolean> decisionCache = new ConcurrentHashMap<String, Boolean>();
+
     /** The Click ConfigService. */
     private ConfigService configService;
 
+    /** The classes loaded or inherited by this ClassLoader, by name. */
+    private Map<String, LoadedClass> loadedClasses = new HashMap<String, LoadedClass>();
+
+    /** The current generation, shared by all generations it inherited from. */
+    private AtomicReference<ReloadClassLoader> current;
+
+    /** The cache of class file bytes, or null if class files are not cached. */
+    private BytecodeCache bytecodeCache;
+
+    /** The metrics to record loaded classes in, or null. */
+    private ReloadMetrics metrics;
+
     // ----------------------------------------------------------- Constructors
 
     /**
@@ -69,6 +120,48 @@ public class ReloadClassLoader extends URLClassLoader {
         ConfigService configService) {
         super(classpath, parent);
         this.configService = configService;
+        this.current = new AtomicReference<ReloadClassLoader>(this);
+    }
+
+    // ------------------------------------------------------ Public Properties
+
+    /**
+     * Return the cache of class file bytes, or null if class files are not
+     * cached.
+     *
+     * @return the cache of class file bytes, or null
+     */
+    public BytecodeCache getBytecodeCache() {
+        return bytecodeCache;
+    }
+
+    /**
+     * Set the cache of class file bytes. Class files found in the cache are
+     * not read again, and class files read by this ClassLoader are added to
+     * the cache.
+     *
+     * @param bytecodeCache the cache of class file bytes
+     */
+    public void setBytecodeCache(BytecodeCache bytecodeCache) {
+        this.bytecodeCache = bytecodeCache;
+    }
+
+    /**
+     * Return the metrics to record loaded classes in, or null.
+     *
+     * @return the metrics to record loaded classes in, or null
+     */
+    public ReloadMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set the metrics to record loaded classes in.
+     *
+     * @param metrics the metrics to record loaded classes in
+     */
+    public void setMetrics(ReloadMetrics metrics) {
+        this.metrics = metrics;
     }
 
     // --------------------------------------------------------- Public Methods
@@ -78,8 +171,10 @@ public class ReloadClassLoader extends URLClassLoader {
      *
      * @param include a class or folder to be reloaded by this ClassLoader
      */
-    public void addInclude(String include) {
+    public synchronized void addInclude(String include) {
         includes.add(include);
+        includeMatcher = null;
+        decisionCache.clear();
     }
 
     /**
@@ -88,8 +183,10 @@ public class ReloadClassLoader extends URLClassLoader {
      * @param exclude a class or folder to be excluded from reloading by this
      * ClassLoader
      */
-    public void addExclude(String exclude) {
+    public synchronized void addExclude(String exclude) {
         excludes.add(exclude);
+        excludeMatcher = null;
+        decisionCache.clear();
     }
 
     /**
@@ -101,6 +198,36 @@ public class ReloadClassLoader extends URLClassLoader {
         super.addURL(url);
     }
 
+    /**
+     * Inherit the classes of the given previous generation which are not
+     * affected by class file changes. A class is affected if its class file
+     * changed or was removed, or if it references an affected class.
+     * <p/>
+     * The previous generations delegate the loading of new classes to this
+     * ClassLoader afterwards.
+     *
+     * @param previous the previous generation ReloadClassLoader
+     * @return the number of inherited classes
+     */
+    public synchronized int inheritClasses(ReloadClassLoader previous) {
+        Map<String, LoadedClass> previousClasses = previous.getLoadedClasses();
+        Set<String> affected = getAffectedClasses(previousClasses);
+
+        int count = 0;
+        for (Iterator<LoadedClass> it = previousClasses.values().iterator(); it.hasNext();) {
+            LoadedClass loadedClass = it.next();
+            String name = loadedClass.type.getName();
+            if (!affected.contains(name) && shouldLoadClass(name)
+                && !loadedClasses.containsKey(name)) {
+                loadedClasses.put(name, loadedClass);
+                count++;
+            }
+        }
+        current = previous.current;
+        current.set(this);
+        return count;
+    }
+
     /**
      * Finds a resource with the given name. If the resource is not found in
      * this ClassLoader the parent ClassLoader will be checked.
@@ -126,6 +253,9 @@ public class ReloadClassLoader extends URLClassLoader {
     /**
      * Return true if the given class should be loaded by this ClassLoader or
      * not.
+     * <p/>
+     * The includes and excludes are compiled into sorted prefix lists, and
+     * decisions are cached by class name until an include or exclude is added.
      *
      * @param name the class to reload
      * @return true if the class should be loaded, false otherwise
@@ -135,26 +265,103 @@ public class ReloadClassLoader extends URLClassLoader {
             return false;
         }
 
-        // Automatically exclude these common classes
-        if (name.startsWith("java.") || name.startsWith("javax.servlet")) {
-            return false;
+        Boolean decision = decisionCache.get(name);
+        if (decision == null) {
+            decision = Boolean.valueOf(decide(name));
+            decisionCache.put(name, decision);
         }
+        return decision.booleanValue();
+    }
+
+    /**
+     * Finds and defines the class with the given name. The modification time
+     * and size of the class file, and the classes it references, are recorded
+     * to support {@link #inheritClasses(net.sf.clickclick.reload.ReloadClassLoader)}.
+     * <p/>
+     * If a {@link #setBytecodeCache(net.sf.clickclick.reload.BytecodeCache) bytecode cache}
+     * is set, the class file is only read if it is not cached for the current
+     * modification time and size of its source.
+     *
+     * @param name the binary name of the class
+     * @return the resulting Class object
+     * @throws ClassNotFoundException if the class could not be found
+     */
+    protected Class findClass(String name) throws ClassNotFoundException {
+        long start = System.nanoTime();
+        String path = name.replace('.', '/') + ".class";
+        URL url = findResource(path);
+        if (url == null) {
+            throw new ClassNotFoundException(name);
+        }
+
+        // Record the source before reading, so a change while reading is
+        // detected on the next check
+        File source = getSourceFile(url);
+        long lastModified = source == null ? 0 : source.lastModified();
+        long length = source == null ? 0 : source.length();
 
-        // First check if class is excluded
-        for (String packageName : excludes) {
-            if (name.startsWith(packageName)) {
-                return false;
+        // Classes in jars are cached by jar and entry path
+        String entryPath = "jar".equals(url.getProtocol()) ? path : null;
+        byte[] bytes = null;
+        if (bytecodeCache != null && source != null) {
+            bytes = bytecodeCache.get(source, entryPath, lastModified, length);
+        }
+        boolean cached = bytes != null;
+        if (bytes == null) {
+            try {
+                bytes = readClassBytes(url);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+            if (bytecodeCache != null && source != null) {
+                bytecodeCache.put(source, entryPath, lastModified, length, bytes);
             }
         }
 
-        // Next check if class is included
-        for (String packageName : includes) {
-            if (name.startsWith(packageName)) {
-                return true;
+        definePackage(name);
+        CodeSource codeSource = new CodeSource(url, (Certificate[]) null);
+        Class c = defineClass(name, bytes, 0, bytes.length, codeSource);
+
+        Set<String> dependencies = new HashSet<String>();
+        try {
+            for (String dependency : ClassDependencyReader.read(bytes)) {
+                if (shouldLoadClass(dependency) && !dependency.equals(name)) {
+                    dependencies.add(dependency);
+                }
             }
+        } catch (IOException e) {
+            // Unknown dependencies, the class is always affected by changes
+            source = null;
         }
+        loadedClasses.put(name, new LoadedClass(c, source, lastModified, length,
+            dependencies));
 
-        return false;
+        if (metrics != null) {
+            metrics.classDefined(System.nanoTime() - start, bytes.length, cached);
+        }
+        return c;
+    }
+
+    /**
+     * Return the bytes of the class file at the given URL.
+     *
+     * @param url the URL of the class file
+     * @return the bytes of the class file
+     * @throws IOException if the class file cannot be read
+     */
+    protected byte[] readClassBytes(URL url) throws IOException {
+        InputStream in = url.openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
     }
 
     /**
@@ -173,9 +380,22 @@ public class ReloadClassLoader extends URLClassLoader {
      *
      * @throws  ClassNotFoundException if the class could not be found
      */
-    protected Class loadClass(String name, boolean resolve) throws ClassNotFoundException {
-        //First, check if the class has already been loaded
+    protected synchronized Class loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        //First, check if the class has already been loaded or inherited
         Class c = findLoadedClass(name);
+        if (c == null) {
+            LoadedClass loadedClass = loadedClasses.get(name);
+            if (loadedClass != null) {
+                c = loadedClass.type;
+            }
+        }
+
+        //If superseded, let the current generation load new classes so all
+        //generations share them
+        ReloadClassLoader localCurrent = current.get();
+        if (c == null && localCurrent != this && shouldLoadClass(name)) {
+            c = localCurrent.loadClass(name);
+        }
 
         if (c == null) {
 
@@ -210,4 +430,184 @@ public class ReloadClassLoader extends URLClassLoader {
         }
         return c;
     }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Return true if the given class should be loaded by this ClassLoader.
+     * Excludes override includes.
+     *
+     * @param name the class to reload
+     * @return true if the class should be loaded, false otherwise
+     */
+    private boolean decide(String name) {
+        // Automatically exclude these common classes
+        if (name.startsWith("java.") || name.startsWith("javax.servlet")) {
+            return false;
+        }
+
+        PrefixMatcher localExcludeMatcher = excludeMatcher;
+        PrefixMatcher localIncludeMatcher = includeMatcher;
+        if (localExcludeMatcher == null || localIncludeMatcher == null) {
+            synchronized (this) {
+                localExcludeMatcher = new PrefixMatcher(excludes);
+                localIncludeMatcher = new PrefixMatcher(includes);
+                excludeMatcher = localExcludeMatcher;
+                includeMatcher = localIncludeMatcher;
+            }
+        }
+
+        // First check if class is excluded, next check if class is included
+        if (localExcludeMatcher.matches(name)) {
+            return false;
+        }
+        return localIncludeMatcher.matches(name);
+    }
+
+    /**
+     * Return a copy of the classes loaded or inherited by this ClassLoader.
+     *
+     * @return the classes loaded or inherited by this ClassLoader
+     */
+    private synchronized Map<String, LoadedClass> getLoadedClasses() {
+        return new HashMap<String, LoadedClass>(loadedClasses);
+    }
+
+    /**
+     * Return the names of the given classes which are affected by class file
+     * changes: the changed classes and the classes which reference them,
+     * directly or indirectly.
+     *
+     * @param classes the loaded classes by name
+     * @return the names of the affected classes
+     */
+    private Set<String> getAffectedClasses(Map<String, LoadedClass> classes) {
+        // Build the reverse dependency graph
+        Map<String, List<String>> dependents = new HashMap<String, List<String>>();
+        for (LoadedClass loadedClass : classes.values()) {
+            String name = loadedClass.type.getName();
+            for (String dependency : loadedClass.dependencies) {
+                List<String> list = dependents.get(dependency);
+                if (list == null) {
+                    list = new ArrayList<String>();
+                    dependents.put(dependency, list);
+                }
+                list.add(name);
+            }
+        }
+
+        Set<String> affected = new HashSet<String>();
+        LinkedList<String> queue = new LinkedList<String>();
+        for (LoadedClass loadedClass : classes.values()) {
+            if (loadedClass.isChanged()) {
+                queue.add(loadedClass.type.getName());
+            }
+        }
+        while (!queue.isEmpty()) {
+            String name = queue.removeFirst();
+            if (affected.add(name)) {
+                List<String> list = dependents.get(name);
+                if (list != null) {
+                    queue.addAll(list);
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Return the file a class is read from: the class file itself or its jar,
+     * or null if the URL is not a local file.
+     *
+     * @param url the URL of the class file
+     * @return the file the class is read from, or null
+     */
+    private File getSourceFile(URL url) {
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return new File(url.toURI());
+            }
+            if ("jar".equals(url.getProtocol())) {
+                URL jarUrl = ((JarURLConnection) url.openConnection()).getJarFileURL();
+                if ("file".equals(jarUrl.getProtocol())) {
+                    return new File(jarUrl.toURI());
+                }
+            }
+        } catch (Exception e) {
+            // Unknown source, the class is always affected by changes
+        }
+        return null;
+    }
+
+    /**
+     * Define the package of the given class, if not defined yet.
+     *
+     * @param name the binary name of the class
+     */
+    private void definePackage(String name) {
+        int index = name.lastIndexOf('.');
+        if (index < 0) {
+            return;
+        }
+        String packageName = name.substring(0, index);
+        if (getPackage(packageName) == null) {
+            try {
+                definePackage(packageName, null, null, null, null, null, null, null);
+            } catch (IllegalArgumentException e) {
+                // Defined concurrently by the parent
+            }
+        }
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides the information recorded for a loaded class.
+     */
+    private static class LoadedClass {
+
+        /** The loaded class. */
+        final Class type;
+
+        /** The class file or jar, or null if unknown. */
+        final File source;
+
+        /** The modification time of the source when the class was loaded. */
+        final long lastModified;
+
+        /** The size of the source when the class was loaded. */
+        final long length;
+
+        /** The names of the reloadable classes referenced by the class. */
+        final Set<String> dependencies;
+
+        /**
+         * Create the information of a loaded class.
+         *
+         * @param type the loaded class
+         * @param source the class file or jar, or null if unknown
+         * @param lastModified the modification time of the source
+         * @param length the size of the source
+         * @param dependencies the reloadable classes referenced by the class
+         */
+        LoadedClass(Class type, File source, long lastModified, long length,
+            Set<String> dependencies) {
+            this.type = type;
+            this.source = source;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * Return true if the source changed since the class was loaded.
+         *
+         * @return true if the source changed since the class was loaded
+         */
+        boolean isChanged() {
+            return source == null || !source.exists()
+                || source.lastModified() != lastModified
+                || source.length() != length;
+        }
+    }
 }
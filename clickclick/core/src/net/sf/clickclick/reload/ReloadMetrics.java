@@ -0,0 +1,228 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.reload;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Provides the counters and timers of {@link ReloadClassFilter} and
+ * {@link ReloadClassLoader}.
+ * <p/>
+ * The metrics are thread-safe and cheap to update, so they are always
+ * collected. ReloadClassFilter registers its metrics as a JMX MBean, and
+ * stores them as a servlet context attribute named after this class for
+ * {@link ReloadMetricsPage}.
+ */
+public class ReloadMetrics implements ReloadMetricsMBean {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The number of nanoseconds in a millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    // -------------------------------------------------------------- Variables
+
+    /** The number of requests handled with a ReloadClassLoader. */
+    private final AtomicLong requestCount = new AtomicLong();
+
+    /** The number of ReloadClassLoaders created. */
+    private final AtomicLong loaderCount = new AtomicLong();
+
+    /** The number of classes defined. */
+    private final AtomicLong classCount = new AtomicLong();
+
+    /** The number of classes inherited by new ReloadClassLoaders. */
+    private final AtomicLong inheritedClassCount = new AtomicLong();
+
+    /** The number of class file bytes read. */
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    /** The number of classes defined from the bytecode cache. */
+    private final AtomicLong bytecodeCacheHits = new AtomicLong();
+
+    /** The time in nanoseconds spent in findClass. */
+    private final AtomicLong findClassTime = new AtomicLong();
+
+    /** The time in nanoseconds spent resolving the classpath. */
+    private final AtomicLong classpathTime = new AtomicLong();
+
+    /** The time in nanoseconds requests waited for the ReloadClassLoader. */
+    private final AtomicLong loaderWaitTime = new AtomicLong();
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * @see ReloadMetricsMBean#getRequestCount()
+     *
+     * @return the number of requests handled with a ReloadClassLoader
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @see ReloadMetricsMBean#getLoaderCount()
+     *
+     * @return the number of ReloadClassLoaders created
+     */
+    public long getLoaderCount() {
+        return loaderCount.get();
+    }
+
+    /**
+     * @see ReloadMetricsMBean#getClassCount()
+     *
+     * @return the number of classes defined by ReloadClassLoaders
+     */
+    public long getClassCount() {
+        return classCount.get();
+    }
+
+    /**
+     * @see ReloadMetricsMBean#getInheritedClassCount()
+     *
+     * @return the number of classes inherited by new ReloadClassLoaders
+     */
+    public long getInheritedClassCount() {
+        return inheritedClassCount.get();
+    }
+
+    /**
+     * @see ReloadMetricsMBean#getBytesRead()
+     *
+     * @return the number of class file bytes read by ReloadClassLoaders
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * @see ReloadMetricsMBean#getBytecodeCacheHits()
+     *
+     * @return the number of classes defined from the bytecode cache
+     */
+    public long getBytecodeCacheHits() {
+        return bytecodeCacheHits.get();
+    }
+
+    /**
+     * @see ReloadMetricsMBean#getFindClassTimeMillis()
+     *
+     * @return the total time in milliseconds spent in findClass
+     */
+    public long getFindClassTimeMillis() {
+        return findClassTime.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @see ReloadMetricsMBean#getClasspathTimeMillis()
+     *
+     * @return the total time in milliseconds spent resolving the classpath
+     */
+    public long getClasspathTimeMillis() {
+        return classpathTime.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @see ReloadMetricsMBean#getLoaderWaitTimeMillis()
+     *
+     * @return the total time in milliseconds requests waited for the loader
+     */
+    public long getLoaderWaitTimeMillis() {
+        return loaderWaitTime.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @see ReloadMetricsMBean#reset()
+     */
+    public void reset() {
+        requestCount.set(0);
+        loaderCount.set(0);
+        classCount.set(0);
+        inheritedClassCount.set(0);
+        bytesRead.set(0);
+        bytecodeCacheHits.set(0);
+        findClassTime.set(0);
+        classpathTime.set(0);
+        loaderWaitTime.set(0);
+    }
+
+    /**
+     * Return a string representation of the metrics.
+     *
+     * @return a string representation of the metrics
+     */
+    @Override
+    public String toString() {
+        return "ReloadMetrics[requests=" + getRequestCount()
+            + ",loaders=" + getLoaderCount()
+            + ",classes=" + getClassCount()
+            + ",inheritedClasses=" + getInheritedClassCount()
+            + ",bytesRead=" + getBytesRead()
+            + ",bytecodeCacheHits=" + getBytecodeCacheHits()
+            + ",findClassTimeMillis=" + getFindClassTimeMillis()
+            + ",classpathTimeMillis=" + getClasspathTimeMillis()
+            + ",loaderWaitTimeMillis=" + getLoaderWaitTimeMillis() + "]";
+    }
+
+    // ------------------------------------------------ Package Private Methods
+
+    /**
+     * Record a request handled with a ReloadClassLoader.
+     *
+     * @param waitTime the time in nanoseconds the request waited for the
+     * ReloadClassLoader
+     */
+    void requestHandled(long waitTime) {
+        requestCount.incrementAndGet();
+        loaderWaitTime.addAndGet(waitTime);
+    }
+
+    /**
+     * Record the creation of a ReloadClassLoader.
+     *
+     * @param inheritedClasses the number of classes the ReloadClassLoader
+     * inherited
+     */
+    void loaderCreated(int inheritedClasses) {
+        loaderCount.incrementAndGet();
+        inheritedClassCount.addAndGet(inheritedClasses);
+    }
+
+    /**
+     * Record a class defined by a ReloadClassLoader.
+     *
+     * @param time the time in nanoseconds spent in findClass
+     * @param length the number of class file bytes
+     * @param cached true if the class file was found in the bytecode cache
+     */
+    void classDefined(long time, int length, boolean cached) {
+        classCount.incrementAndGet();
+        findClassTime.addAndGet(time);
+        if (cached) {
+            bytecodeCacheHits.incrementAndGet();
+        } else {
+            bytesRead.addAndGet(length);
+        }
+    }
+
+    /**
+     * Record the resolution of the classpath.
+     *
+     * @param time the time in nanoseconds spent resolving the classpath
+     */
+    void classpathResolved(long time) {
+        classpathTime.addAndGet(time);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.reload;
+
+/**
+ * Provides the JMX management interface of {@link ReloadMetrics}.
+ */
+public interface ReloadMetricsMBean {
+
+    /**
+     * Return the number of requests handled with a ReloadClassLoader.
+     *
+     * @return the number of requests handled with a ReloadClassLoader
+     */
+    long getRequestCount();
+
+    /**
+     * Return the number of ReloadClassLoaders created.
+     *
+     * @return the number of ReloadClassLoaders created
+     */
+    long getLoaderCount();
+
+    /**
+     * Return the number of classes defined by ReloadClassLoaders.
+     *
+     * @return the number of classes defined by ReloadClassLoaders
+     */
+    long getClassCount();
+
+    /**
+     * Return the number of classes inherited by new ReloadClassLoaders.
+     *
+     * @return the number of classes inherited by new ReloadClassLoaders
+     */
+    long getInheritedClassCount();
+
+    /**
+     * Return the number of class file bytes read by ReloadClassLoaders, which
+     * excludes the class files found in the bytecode cache.
+     *
+     * @return the number of class file bytes read by ReloadClassLoaders
+     */
+    long getBytesRead();
+
+    /**
+     * Return the number of classes defined from the bytecode cache.
+     *
+     * @return the number of classes defined from the bytecode cache
+     */
+    long getBytecodeCacheHits();
+
+    /**
+     * Return the total time in milliseconds spent finding and defining
+     * classes.
+     *
+     * @return the total time in milliseconds spent in findClass
+     */
+    long getFindClassTimeMillis();
+
+    /**
+     * Return the total time in milliseconds spent resolving the classpath.
+     *
+     * @return the total time in milliseconds spent resolving the classpath
+     */
+    long getClasspathTimeMillis();
+
+    /**
+     * Return the total time in milliseconds requests waited for the
+     * ReloadClassLoader, including the creation of new ReloadClassLoaders.
+     *
+     * @return the total time in milliseconds requests waited for the loader
+     */
+    long getLoaderWaitTimeMillis();
+
+    /**
+     * Reset all counters and timers to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.reload;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.servlet.http.HttpServletResponse;
+import org.apache.click.Page;
+import org.apache.click.util.HtmlStringBuffer;
+
+/**
+ * Provides a diagnostic Page which renders the {@link ReloadMetrics} of the
+ * {@link ReloadClassFilter}.
+ * <p/>
+ * The Page does not need a template. Map it to a path in click.xml to enable
+ * it, for example:
+ * <pre class="prettyprint">
+ * &lt;page path="reload-metrics.htm" classname="net.sf.clickclick.reload.ReloadMetricsPage"/&gt; </pre>
+ *
+ * POST the parameter <tt>reset=true</tt> to the Page to reset the metrics,
+ * as the Reset button of the Page does. GET requests never reset the
+ * metrics, so following or prefetching a link cannot reset them.
+ * <p/>
+ * <b>Please note:</b> the metrics are only available while the
+ * ReloadClassFilter is configured, which should not be the case in
+ * production.
+ */
+public class ReloadMetricsPage extends Page {
+
+    // -------------------------------------------------------------- Constants
+
+    private static final long serialVersionUID = 1L;
+
+    // -------------------------------------------------------- Event Handlers
+
+    /**
+     * Render the metrics directly to the response.
+     *
+     * @see org.apache.click.Page#onGet()
+     */
+    @Override
+    public void onGet() {
+        renderMetrics(getMetrics());
+    }
+
+    /**
+     * Reset the metrics if the <tt>reset</tt> parameter is <tt>true</tt>, and
+     * render them directly to the response.
+     *
+     * @see org.apache.click.Page#onPost()
+     */
+    @Override
+    public void onPost() {
+        ReloadMetrics metrics = getMetrics();
+
+        if (metrics != null && "true".equals(getContext().getRequestParameter("reset"))) {
+            metrics.reset();
+        }
+
+        renderMetrics(metrics);
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Return the metrics of the ReloadClassFilter, or null if the filter is
+     * not configured.
+     *
+     * @return the metrics of the ReloadClassFilter, or null
+     */
+    private ReloadMetrics getMetrics() {
+        return (ReloadMetrics) getContext().getServletContext()
+            .getAttribute(ReloadMetrics.class.getName());
+    }
+
+    /**
+     * Render the given metrics directly to the response.
+     *
+     * @param metrics the metrics to render, or null if the ReloadClassFilter
+     * is not configured
+     */
+    private void renderMetrics(ReloadMetrics metrics) {
+        HtmlStringBuffer buffer = new HtmlStringBuffer();
+        buffer.append("<html><head><title>Reload Metrics</title></head><body>");
+        buffer.append("<h1>Reload Metrics</h1>");
+        if (metrics == null) {
+            buffer.append("<p>ReloadClassFilter is not configured.</p>");
+        } else {
+            buffer.append("<table border=\"1\" cellpadding=\"4\">");
+            renderRow(buffer, "Requests", metrics.getRequestCount());
+            renderRow(buffer, "Class loaders created", metrics.getLoaderCount());
+            renderRow(buffer, "Classes loaded", metrics.getClassCount());
+            renderRow(buffer, "Classes inherited", metrics.getInheritedClassCount());
+            renderRow(buffer, "Class file bytes read", metrics.getBytesRead());
+            renderRow(buffer, "Bytecode cache hits", metrics.getBytecodeCacheHits());
+            renderRow(buffer, "Time in findClass (ms)", metrics.getFindClassTimeMillis());
+            renderRow(buffer, "Time resolving classpath (ms)", metrics.getClasspathTimeMillis());
+            renderRow(buffer, "Time waiting for class loader (ms)", metrics.getLoaderWaitTimeMillis());
+            buffer.append("</table>");
+            buffer.append("<form method=\"post\">");
+            buffer.append("<input type=\"hidden\" name=\"reset\" value=\"true\"/>");
+            buffer.append("<input type=\"submit\" value=\"Reset\"/>");
+            buffer.append("</form>");
+        }
+        buffer.append("</body></html>");
+
+        HttpServletResponse response = getContext().getResponse();
+        response.setContentType("text/html");
+        try {
+            Writer writer = response.getWriter();
+            writer.write(buffer.toString());
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        // The response is complete, no template is rendered
+        setPath(null);
+    }
+
+    /**
+     * Render a table row with the given label and value.
+     *
+     * @param buffer the buffer to render to
+     * @param label the row label
+     * @param value the row value
+     */
+    private void renderRow(HtmlStringBuffer buffer, String label, long value) {
+        buffer.append("<tr><th align=\"left\">");
+        buffer.appendEscaped(label);
+        buffer.append("</th><td align=\"right\">");
+        buffer.append(value);
+        buffer.append("</td></tr>");
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.util;
+
+import java.text.DateFormat;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.Format;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides a cache of formatters by message format pattern and locale, for
+ * example <tt>"{0,date,dd MMM yyyy}"</tt>.
+ * <p/>
+ * Formatters such as MessageFormat are not thread-safe, so the cache holds a
+ * small pool of formatters per pattern and locale, and a formatter is only
+ * used by one thread at a time. Formatters are shared across controls,
+ * requests and threads, and a pattern is only parsed again when more threads
+ * format it concurrently than the pool holds.
+ * <p/>
+ * The cache holds at most {@value #MAX_PATTERNS} patterns and locales, and is
+ * cleared when full. It holds no thread local state, so it does not keep the
+ * web application class loader alive in container threads after a redeploy.
+ * <p/>
+ * Patterns which consist of a single date, time or number argument, such as
+ * <tt>"{0,date,dd MMM yyyy}"</tt>, <tt>"{0,number,currency}"</tt> or
+ * <tt>"{0,number,#,##0.00}"</tt>, are formatted with the matching DateFormat
+ * or NumberFormat directly instead of a MessageFormat. The output is the same.
+ */
+public final class FormatterCache {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The maximum number of cached patterns and locales. */
+    public static final int MAX_PATTERNS = 500;
+
+    /** The maximum number of idle formatters per pattern and locale. */
+    private static final int MAX_POOLED_FORMATTERS = 4;
+
+    /** The pools of idle formatters, by pattern and locale. */
+    private static final Map<CacheKey, BlockingQueue<Formatter>> FORMATTER_CACHE =
+        new ConcurrentHashMap<CacheKey, BlockingQueue<Formatter>>();
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Prevent instantiation.
+     */
+    private FormatterCache() {
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Format the given value with the given message format pattern and
+     * locale. The value is the argument <tt>{0}</tt> of the pattern.
+     *
+     * @param pattern the message format pattern
+     * @param locale the locale to format the value with
+     * @param value the value to format
+     * @return the formatted value
+     */
+    public static String format(String pattern, Locale locale, Object value) {
+        if (pattern == null) {
+            throw new IllegalArgumentException("Null pattern parameter");
+        }
+        if (locale == null) {
+            throw new IllegalArgumentException("Null locale parameter");
+        }
+
+        BlockingQueue<Formatter> pool = getPool(new CacheKey(pattern, locale));
+        Formatter formatter = pool.poll();
+        if (formatter == null) {
+            formatter = createFormatter(pattern, locale);
+        }
+        try {
+            return formatter.format(value);
+        } finally {
+            // Discarded if the pool is full
+            pool.offer(formatter);
+        }
+    }
+
+    /**
+     * Remove all cached formatters.
+     */
+    public static void clearCache() {
+        FORMATTER_CACHE.clear();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Return the pool of idle formatters of the given pattern and locale.
+     *
+     * @param key the pattern and locale
+     * @return the pool of idle formatters of the given pattern and locale
+     */
+    private static BlockingQueue<Formatter> getPool(CacheKey key) {
+        BlockingQueue<Formatter> pool = FORMATTER_CACHE.get(key);
+        if (pool == null) {
+            if (FORMATTER_CACHE.size() >= MAX_PATTERNS) {
+                FORMATTER_CACHE.clear();
+            }
+            // Concurrent threads may create the same pool, which is harmless
+            pool = new ArrayBlockingQueue<Formatter>(MAX_POOLED_FORMATTERS);
+            FORMATTER_CACHE.put(key, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Create a formatter for the given pattern and locale. Single argument
+     * date, time and number patterns use a DateFormat or NumberFormat directly.
+     *
+     * @param pattern the message format pattern
+     * @param locale the locale of the formatter
+     * @return a new formatter for the given pattern and locale
+     */
+    private static Formatter createFormatter(String pattern, Locale locale) {
+        Format format = createDirectFormat(pattern, locale);
+        if (format != null) {
+            return new Formatter(format, false);
+        }
+        return new Formatter(new MessageFormat(pattern, locale), true);
+    }
+
+    /**
+     * Return the DateFormat or NumberFormat equivalent to the given pattern, or
+     * null if the pattern is not a single date, time or number argument.
+     *
+     * @param pattern the message format pattern
+     * @param locale the locale of the format
+     * @return the equivalent DateFormat or NumberFormat, or null
+     */
+    private static Format createDirectFormat(String pattern, Locale locale) {
+        if (!pattern.startsWith("{0,") || !pattern.endsWith("}")) {
+            return null;
+        }
+        String element = pattern.substring(3, pattern.length() - 1);
+
+        // Quotes and nested arguments need MessageFormat parsing
+        if (element.indexOf('\'') >= 0 || element.indexOf('{') >= 0
+            || element.indexOf('}') >= 0) {
+            return null;
+        }
+
+        String type = element;
+        String style = "";
+        int index = element.indexOf(',');
+        if (index >= 0) {
+            type = element.substring(0, index);
+            style = element.substring(index + 1);
+        }
+        type = type.trim();
+
+        if ("number".equalsIgnoreCase(type)) {
+            String trimmedStyle = style.trim();
+            if (trimmedStyle.length() == 0) {
+                return NumberFormat.getInstance(locale);
+            } else if ("currency".equalsIgnoreCase(trimmedStyle)) {
+                return NumberFormat.getCurrencyInstance(locale);
+            } else if ("percent".equalsIgnoreCase(trimmedStyle)) {
+                return NumberFormat.getPercentInstance(locale);
+            } else if ("integer".equalsIgnoreCase(trimmedStyle)) {
+                return NumberFormat.getIntegerInstance(locale);
+            }
+            return new DecimalFormat(style, new DecimalFormatSymbols(locale));
+
+        } else if ("date".equalsIgnoreCase(type) || "time".equalsIgnoreCase(type)) {
+            boolean date = "date".equalsIgnoreCase(type);
+            String trimmedStyle = style.trim();
+            int dateStyle = -1;
+            if (trimmedStyle.length() == 0 || "medium".equalsIgnoreCase(trimmedStyle)) {
+                dateStyle = DateFormat.DEFAULT;
+            } else if ("short".equalsIgnoreCase(trimmedStyle)) {
+                dateStyle = DateFormat.SHORT;
+            } else if ("long".equalsIgnoreCase(trimmedStyle)) {
+                dateStyle = DateFormat.LONG;
+            } else if ("full".equalsIgnoreCase(trimmedStyle)) {
+                dateStyle = DateFormat.FULL;
+            }
+
+            if (dateStyle < 0) {
+                return new SimpleDateFormat(style, locale);
+            } else if (date) {
+                return DateFormat.getDateInstance(dateStyle, locale);
+            } else {
+                return DateFormat.getTimeInstance(dateStyle, locale);
+            }
+        }
+        return null;
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides a cached formatter, which wraps either a MessageFormat or an
+     * equivalent DateFormat or NumberFormat.
+     */
+    private static class Formatter {
+
+        /** The format to apply. */
+        private final Format format;
+
+        /** Indicates if the format is a MessageFormat. */
+        private final boolean messageFormat;
+
+        /**
+         * Create a Formatter for the given format.
+         *
+         * @param format the format to apply
+         * @param messageFormat true if the format is a MessageFormat
+         */
+        Formatter(Format format, boolean messageFormat) {
+            this.format = format;
+            this.messageFormat = messageFormat;
+        }
+
+        /**
+         * Format the given value.
+         *
+         * @param value the value to format
+         * @return the formatted value
+         */
+        String format(Object value) {
+            if (messageFormat) {
+                return format.format(new Object[] { value });
+            }
+            return format.format(value);
+        }
+    }
+
+    /**
+     * Provides the formatter cache key of a pattern and locale.
+     */
+    private static class CacheKey {
+
+        /** Pattern to encapsulate in cache key. */
+        private final String pattern;
+
+        /** Locale to encapsulate in cache key. */
+        private final Locale locale;
+
+        /**
+         * Constructs a new CacheKey for the given pattern and locale.
+         *
+         * @param pattern the pattern to build the cache key for
+         * @param locale the locale to build the cache key for
+         */
+        public CacheKey(String pattern, Locale locale) {
+            this.pattern = pattern;
+            this.locale = locale;
+        }
+
+        /**
+         * @see Object#equals(Object)
+         *
+         * @param o the object with which to compare this instance with
+         * @return true if the specified object is the same as this object
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey that = (CacheKey) o;
+            return pattern.equals(that.pattern) && locale.equals(that.locale);
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         *
+         * @return a hash code value for this object.
+         */
+        @Override
+        public int hashCode() {
+            return pattern.hashCode() * 31 + locale.hashCode();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.click.Context;
+import org.apache.click.Control;
+import org.apache.click.control.AbstractControl;
+import org.apache.click.service.ConfigService;
+import org.apache.click.util.ClickUtils;
+
+/**
+ * Provides a shared, immutable table of control messages per control class,
+ * parent classes and locale.
+ * <p/>
+ * A control declares the names of its messages as a constant array, and
+ * reads a message by its index in the array:
+ *
+ * <pre class="prettyprint">
+ * private static final String[] MESSAGE_NAMES = { "paginator-first-label", ... };
+ *
+ * public String getFirstLabelMessage() {
+ *     return MessageTable.getMessage(this, MESSAGE_NAMES, 0);
+ * } </pre>
+ *
+ * The table resolves all the messages through
+ * {@link org.apache.click.control.AbstractControl#getMessage(java.lang.String)}
+ * the first time it is used for a control class and locale, and is shared by
+ * all the controls of the class afterwards.
+ * <p/>
+ * Parent controls and the Page may override control messages, see
+ * {@link org.apache.click.util.ClickUtils#getParentMessage(org.apache.click.Control, java.lang.String)}.
+ * Tables are therefore shared by controls with the same classes of parents
+ * up to the Page. A Page with its own message overrides gets its own table,
+ * and so does a control without parent. Parent messages are expected to
+ * depend only on the parent class and locale, like Click resource bundles.
+ * <p/>
+ * Tables are only cached in production and profile modes, like Click caches
+ * resource bundles. In other modes messages are resolved on every call, so
+ * changes to the resource bundles are picked up.
+ */
+public final class MessageTable {
+
+    // -------------------------------------------------------------- Constants
+
+    /**
+     * The cache of message tables by control class, parent classes, locale
+     * and names.
+     */
+    private static final Map<CacheKey, MessageTable> TABLE_CACHE =
+        new ConcurrentHashMap<CacheKey, MessageTable>();
+
+    // -------------------------------------------------------------- Variables
+
+    /** The messages, in the order of the message names. */
+    private final String[] messages;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create a MessageTable of the given control messages.
+     *
+     * @param control the control to resolve the messages with
+     * @param names the message names
+     */
+    private MessageTable(AbstractControl control, String[] names) {
+        messages = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            messages[i] = control.getMessage(names[i]);
+        }
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return the message with the given index of the given control, or null
+     * if the message is not found.
+     *
+     * @param control the control to return the message of
+     * @param names the message names of the control class, which must be the
+     * same array instance for every call
+     * @param index the index of the message name
+     * @return the message with the given index, or null
+     */
+    public static String getMessage(AbstractControl control, String[] names,
+        int index) {
+        if (control == null) {
+            throw new IllegalArgumentException("Null control parameter");
+        }
+        if (names == null) {
+            throw new IllegalArgumentException("Null names parameter");
+        }
+
+        Context context = control.getContext();
+        ConfigService configService =
+            ClickUtils.getConfigService(context.getServletContext());
+        if (!configService.isProductionMode() && !configService.isProfileMode()) {
+            return control.getMessage(names[index]);
+        }
+
+        CacheKey key = new CacheKey(control.getClass(), getParentClasses(control),
+            context.getLocale(), names);
+        MessageTable table = TABLE_CACHE.get(key);
+        if (table == null) {
+            // Concurrent threads may build the same table, which is harmless
+            table = new MessageTable(control, names);
+            TABLE_CACHE.put(key, table);
+        }
+        return table.messages[index];
+    }
+
+    /**
+     * Remove all message tables from the cache.
+     */
+    public static void clearCache() {
+        TABLE_CACHE.clear();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Return the classes of the parents of the given control, up to and
+     * including the Page.
+     *
+     * @param control the control to return the parent classes of
+     * @return the classes of the parents of the given control
+     */
+    private static Class[] getParentClasses(Control control) {
+        List<Class> parentClasses = new ArrayList<Class>();
+        Object parent = control.getParent();
+        while (parent != null) {
+            parentClasses.add(parent.getClass());
+            if (!(parent instanceof Control)) {
+                break;
+            }
+            parent = ((Control) parent).getParent();
+        }
+        return parentClasses.toArray(new Class[parentClasses.size()]);
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides the message table cache key of a control class, parent
+     * classes, locale and message names.
+     */
+    private static class CacheKey {
+
+        /** Control class to encapsulate in cache key. */
+        private final Class controlClass;
+
+        /** Parent classes to encapsulate in cache key. */
+        private final Class[] parentClasses;
+
+        /** Locale to encapsulate in cache key. */
+        private final Locale locale;
+
+        /** Message names to encapsulate in cache key. */
+        private final String[] names;
+
+        /**
+         * Constructs a new CacheKey for the given control class, parent
+         * classes, locale and message names.
+         *
+         * @param controlClass the control class to build the cache key for
+         * @param parentClasses the parent classes to build the cache key for
+         * @param locale the locale to build the cache key for
+         * @param names the message names to build the cache key for
+         */
+        public CacheKey(Class controlClass, Class[] parentClasses,
+            Locale locale, String[] names) {
+            this.controlClass = controlClass;
+            this.parentClasses = parentClasses;
+            this.locale = locale;
+            this.names = names;
+        }
+
+        /**
+         * @see Object#equals(Object)
+         *
+         * @param o the object with which to compare this instance with
+         * @return true if the specified object is the same as this object
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey that = (CacheKey) o;
+            return controlClass == that.controlClass && names == that.names
+                && locale.equals(that.locale)
+                && Arrays.equals(parentClasses, that.parentClasses);
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         *
+         * @return a hash code value for this object.
+         */
+        @Override
+        public int hashCode() {
+            return ((controlClass.hashCode() * 31 + Arrays.hashCode(parentClasses))
+                * 31 + locale.hashCode()) * 31 + System.identityHashCode(names);
+        }
+    }
+}
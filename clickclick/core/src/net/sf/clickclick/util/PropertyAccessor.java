@@ -0,0 +1,267 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.clickclick.util;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.click.util.ClickUtils;
+
+/**
+ * Provides a compiled property accessor for a given class and property
+ * expression, for example <tt>"name"</tt> or <tt>"address.city"</tt>.
+ * <p/>
+ * Accessors are obtained through {@link #getAccessor(java.lang.Class, java.lang.String)}
+ * and cached in a shared, thread-safe cache. The expression is parsed and the
+ * getter methods are resolved once, when the accessor is created, so that
+ * {@link #getValue(java.lang.Object)} only invokes the resolved methods.
+ * <p/>
+ * Property values are resolved the same way as
+ * {@link org.apache.click.util.PropertyUtils#getValue(java.lang.Object, java.lang.String)}:
+ * a property <tt>"name"</tt> is read through <tt>getName()</tt>,
+ * <tt>isName()</tt> or <tt>name()</tt>, and a <tt>Map</tt> value is read
+ * with <tt>get("name")</tt>.
+ * <p/>
+ * Nested properties are resolved against the declared return type of the
+ * parent getter. If the declared type does not provide the property, for
+ * example when it is declared as <tt>Object</tt>, the getter is resolved
+ * against the runtime class of the value.
+ * <p/>
+ * <b>Please note:</b> the cache holds references to the accessed classes. Invoke
+ * {@link #clearCache()} when classes are reloaded.
+ */
+public final class PropertyAccessor {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The cache of accessors by class and expression. */
+    private static final Map<CacheKey, PropertyAccessor> ACCESSOR_CACHE =
+        new ConcurrentHashMap<CacheKey, PropertyAccessor>();
+
+    // -------------------------------------------------------------- Variables
+
+    /** The class the accessor was compiled for. */
+    private final Class sourceClass;
+
+    /** The property expression. */
+    private final String expr;
+
+    /** The property names of the expression path. */
+    private final String[] names;
+
+    /**
+     * The getter methods of the expression path. A method is null if it could
+     * not be resolved from the declared types.
+     */
+    private final Method[] methods;
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Create a PropertyAccessor for the given class and expression.
+     *
+     * @param sourceClass the class to compile the accessor for
+     * @param expr the property expression
+     */
+    private PropertyAccessor(Class sourceClass, String expr) {
+        this.sourceClass = sourceClass;
+        this.expr = expr;
+        this.names = expr.split("\\.");
+        this.methods = new Method[names.length];
+
+        Class type = sourceClass;
+        for (int i = 0; i < names.length && type != null; i++) {
+            if (Map.class.isAssignableFrom(type)) {
+                break;
+            }
+            methods[i] = findGetter(type, names[i]);
+            type = methods[i] == null ? null : methods[i].getReturnType();
+        }
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Return the accessor for the given class and property expression. The
+     * accessor is created and cached on the first request.
+     *
+     * @param sourceClass the class to return the accessor for
+     * @param expr the property expression
+     * @return the accessor for the given class and property expression
+     */
+    public static PropertyAccessor getAccessor(Class sourceClass, String expr) {
+        if (sourceClass == null) {
+            throw new IllegalArgumentException("Null sourceClass parameter");
+        }
+        if (expr == null) {
+            throw new IllegalArgumentException("Null expr parameter");
+        }
+        CacheKey key = new CacheKey(sourceClass, expr);
+        PropertyAccessor accessor = ACCESSOR_CACHE.get(key);
+        if (accessor == null) {
+            // Concurrent threads may compile the same accessor, which is harmless
+            accessor = new PropertyAccessor(sourceClass, expr);
+            ACCESSOR_CACHE.put(key, accessor);
+        }
+        return accessor;
+    }
+
+    /**
+     * Remove all accessors from the cache.
+     */
+    public static void clearCache() {
+        ACCESSOR_CACHE.clear();
+    }
+
+    /**
+     * Return the class this accessor was compiled for.
+     *
+     * @return the class this accessor was compiled for
+     */
+    public Class getSourceClass() {
+        return sourceClass;
+    }
+
+    /**
+     * Return the property expression of this accessor.
+     *
+     * @return the property expression of this accessor
+     */
+    public String getExpr() {
+        return expr;
+    }
+
+    /**
+     * Return the property value of the given source object. If an
+     * intermediate value of a nested expression is null, this method returns
+     * null.
+     *
+     * @param source the source object, which must be an instance of the
+     * {@link #getSourceClass() source class}
+     * @return the property value of the given source object
+     */
+    public Object getValue(Object source) {
+        Object value = source;
+        for (int i = 0; i < names.length; i++) {
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof Map) {
+                value = ((Map) value).get(names[i]);
+                continue;
+            }
+
+            Method method = methods[i];
+            if (method == null || !method.getDeclaringClass().isInstance(value)) {
+                method = getAccessor(value.getClass(), names[i]).methods[0];
+                if (method == null) {
+                    String msg = "No matching getter method found for property '"
+                        + names[i] + "' on class " + value.getClass().getName();
+                    throw new RuntimeException(msg);
+                }
+            }
+
+            try {
+                value = method.invoke(value);
+            } catch (Exception e) {
+                String msg = "Error getting property '" + names[i] + "' from "
+                    + value.getClass();
+                throw new RuntimeException(msg, e);
+            }
+        }
+        return value;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Return the public getter method of the given property, or null if no
+     * getter is found.
+     *
+     * @param type the class to find the getter on
+     * @param name the property name
+     * @return the public getter method of the given property, or null
+     */
+    private static Method findGetter(Class<?> type, String name) {
+        try {
+            return type.getMethod(ClickUtils.toGetterName(name));
+        } catch (NoSuchMethodException nsme) {
+            // Try the next getter name
+        }
+        try {
+            return type.getMethod(ClickUtils.toIsGetterName(name));
+        } catch (NoSuchMethodException nsme) {
+            // Try the next getter name
+        }
+        try {
+            return type.getMethod(name);
+        } catch (NoSuchMethodException nsme) {
+            return null;
+        }
+    }
+
+    // ---------------------------------------------------------- Inner Classes
+
+    /**
+     * Provides the accessor cache key of a class and property expression.
+     */
+    private static class CacheKey {
+
+        /** Class to encapsulate in cache key. */
+        private final Class sourceClass;
+
+        /** Expression to encapsulate in cache key. */
+        private final String expr;
+
+        /**
+         * Constructs a new CacheKey for the given class and expression.
+         *
+         * @param sourceClass the class to build the cache key for
+         * @param expr the expression to build the cache key for
+         */
+        public CacheKey(Class sourceClass, String expr) {
+            this.sourceClass = sourceClass;
+            this.expr = expr;
+        }
+
+        /**
+         * @see Object#equals(Object)
+         *
+         * @param o the object with which to compare this instance with
+         * @return true if the specified object is the same as this object
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey that = (CacheKey) o;
+            return sourceClass == that.sourceClass && expr.equals(that.expr);
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         *
+         * @return a hash code value for this object.
+         */
+        @Override
+        public int hashCode() {
+            return sourceClass.hashCode() * 31 + expr.hashCode();
+        }
+    }
+}
@@ -22,6 +22,13 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.click.Page;
 import org.apache.click.util.ClickUtils;
@@ -33,18 +40,64 @@ import org.w3c.dom.Element;
 /**
  * This class provides a ConfigService that does not cache Page metadata
  * and enables hot reloading of Page classes.
+ * <p/>
+ * In development modes resolved Page classes are cached by path, together
+ * with the context ClassLoader they were loaded with and the cache version.
+ * An entry is only used by requests running with the same ClassLoader, and
+ * {@link #invalidatePageCache()} discards all entries. An automapped Page
+ * class is only returned while its template exists, so deleting a template
+ * unmaps its Page class without reloading. Page classes are resolved without
+ * locking, so concurrent requests never wait on each other.
+ * <p/>
+ * The paths found for Page classes by {@link #getPagePath(java.lang.Class)}
+ * are cached the same way, including Page classes without a path, until
+ * {@link #invalidatePageCache()} is invoked.
+ * <p/>
+ * At startup the templates are matched to Page class names in parallel, by
+ * checking which class files exist, without loading the classes. The
+ * resulting path to class name index survives class reloading, so resolving
+ * the Page class of an indexed path only loads the indexed class. Paths which
+ * are resolved later, such as new templates, are added to the index.
+ * <p/>
+ * The public fields of Page classes are cached in development modes too, in
+ * a map with weak Page class keys, until {@link #invalidatePageCache()} is
+ * invoked.
  */
 public class ClickClickConfigService extends XmlConfigService {
 
-    // -------------------------------------------------------- Constants
+    // -------------------------------------------------------------- Variables
 
-    private static final Object PAGE_LOAD_LOCK = new Object();
+    /** The manually mapped pages, by path. */
+    private final Map<String, PageMetaData> manualPageByPathMap =
+        new ConcurrentHashMap<String, PageMetaData>();
 
-    // -------------------------------------------------------------- Variables
+    /** The index between manually mapped paths and Page class names. */
+    private final PageIndex manualPageIndex = new PageIndex();
+
+    /** The Page classes resolved in development modes, by path. */
+    private final Map<String, PageClassEntry> pageClassCache =
+        new ConcurrentHashMap<String, PageClassEntry>();
+
+    /**
+     * The paths found by the {@link PathLookupAlgorithm}, by Page class name.
+     * Page classes without a path are cached with a null path.
+     */
+    private final Map<String, PageClassEntry> pagePathCache =
+        new ConcurrentHashMap<String, PageClassEntry>();
+
+    /**
+     * The public fields of Page classes, by Page class. The fields reference
+     * their class, so the map is cleared by {@link #invalidatePageCache()}
+     * rather than relying on the weak keys alone.
+     */
+    private final Map<Class, PageFields> pageFieldsCache =
+        Collections.synchronizedMap(new WeakHashMap<Class, PageFields>());
 
-    private Map manualPageByPathMap = new HashMap();
+    /** The index between template paths and Page class names. */
+    private final PageIndex pageIndex = new PageIndex();
 
-    private Map manualPageByClassNameMap = new HashMap();
+    /** The version of the {@link #pageClassCache} and {@link #pagePathCache}. */
+    private volatile int pageCacheVersion;
 
     // --------------------------------------------------------- Public Methods
 
@@ -57,6 +110,17 @@ public class ClickClickConfigService extends XmlConfigService {
         return pagePackages;
     }
 
+    /**
+     * Discard the cached Page classes, Page paths and Page fields.
+     * ReloadClassFilter invokes this method when classes are reloaded.
+     */
+    public synchronized void invalidatePageCache() {
+        pageCacheVersion++;
+        pageClassCache.clear();
+        pagePathCache.clear();
+        pageFieldsCache.clear();
+    }
+
     /**
      * @see org.apache.click.service.ConfigService#getPageClass(java.lang.String)
      *
@@ -71,41 +135,33 @@ public class ClickClickConfigService extends XmlConfigService {
 
         } else {
             // Else in development, debug or trace mode
-            synchronized (PAGE_LOAD_LOCK) {
+            int version = pageCacheVersion;
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
 
-                // Try and load the manually mapped page first
-                PageMetaData page = lookupManuallyStoredMetaData(path);
+            PageClassEntry entry = pageClassCache.get(path);
+            if (entry != null && entry.version == version
+                && entry.classLoader == classLoader) {
 
-                if (page != null) {
-                    try {
-                        return (Class<? extends Page>) ClickUtils.classForName(page.getPageClassName());
-                    } catch (ClassNotFoundException ex) {
-                        // ignore, this class is not available, so try and load
-                        // it from the classpath
-                    }
+                // Automapped pages are only returned while their template
+                // exists, as the template may be deleted without reloading
+                if (entry.path != null || hasTemplate(path)) {
+                    return entry.pageClass;
                 }
+                pageClassCache.remove(path);
+                return null;
+            }
 
-                Class pageClass = null;
-
-                try {
-                    URL resource = getServletContext().getResource(path);
-
-                    if (resource != null) {
-                        for (int i = 0; i < pagePackages.size(); i++) {
-                            String pagesPackage = pagePackages.get(i).toString();
-
-                            pageClass = getPageClass(path, pagesPackage);
-                        }
-                    } else {
-                        // No caching of this class or fields are done here.
-                    }
-
-                } catch (MalformedURLException ex) {
-                    // ignore, will return null
-                }
+            // Concurrent requests may resolve the same path, which is harmless
+            Class<? extends Page> pageClass = resolvePageClass(path);
 
-                return pageClass;
+            // Missing classes are not cached, as templates and classes may be
+            // added while the application runs
+            if (pageClass != null) {
+                String manualPath = isManuallyMapped(path, pageClass) ? path : null;
+                pageClassCache.put(path, new PageClassEntry(pageClass,
+                    manualPath, classLoader, version));
             }
+            return pageClass;
         }
     }
 
@@ -124,8 +180,27 @@ public class ClickClickConfigService extends XmlConfigService {
             return page.getPath();
         }
 
-        // If not found we do a reverse algorithm lookup for the path
-        return new PathLookupAlgorithm().getPagePath(pageClass);
+        // If not found we do a reverse algorithm lookup for the path, which
+        // checks up to 16 template resources, so the result is cached
+        int version = pageCacheVersion;
+        PageClassEntry entry = pagePathCache.get(pageClass.getName());
+        if (entry != null && entry.version == version
+            && entry.pageClass == pageClass) {
+            return entry.path;
+        }
+
+        String path = null;
+        String[] paths = pageIndex.getPaths(pageClass.getName());
+        if (paths.length == 1) {
+            path = paths[0];
+        } else {
+            path = new PathLookupAlgorithm().getPagePath(pageClass);
+        }
+        Class<?> type = pageClass;
+        pagePathCache.put(pageClass.getName(), new PageClassEntry(
+            type.asSubclass(Page.class), path, pageClass.getClassLoader(),
+            version));
+        return path;
     }
 
     /**
@@ -157,7 +232,7 @@ public class ClickClickConfigService extends XmlConfigService {
         if (isProductionMode() || isProfileMode()) {
             return super.getPageField(pageClass, fieldName);
         }
-        return (Field) getPageFields(pageClass).get(fieldName);
+        return getCachedPageFields(pageClass).fieldMap.get(fieldName);
     }
 
     /**
@@ -170,7 +245,7 @@ public class ClickClickConfigService extends XmlConfigService {
         if (isProductionMode() || isProfileMode()) {
             return super.getPageFieldArray(pageClass);
         }
-        return pageClass.getFields();
+        return getCachedPageFields(pageClass).fieldArray;
     }
 
     /**
@@ -183,13 +258,7 @@ public class ClickClickConfigService extends XmlConfigService {
         if (isProductionMode() || isProfileMode()) {
             return super.getPageFields(pageClass);
         }
-        Field[] fieldArray = getPageFieldArray(pageClass);
-        Map fields = new HashMap();
-        for (int i = 0; i < fieldArray.length; i++) {
-            Field field = fieldArray[i];
-            fields.put(field.getName(), field);
-        }
-        return fields;
+        return getCachedPageFields(pageClass).fieldMap;
     }
 
     // ------------------------------------------------ Package Private Methods
@@ -228,7 +297,9 @@ public class ClickClickConfigService extends XmlConfigService {
     /**
      * In Production modes delegate to the super implementation. In development
      * modes this method does <b>not</b> associate template files
-     * with matching Java classes found on the classpath.
+     * with matching Java classes found on the classpath. Instead it indexes
+     * the names of the matching Page classes, see
+     * {@link #indexTemplates(java.lang.String, java.util.List)}.
      * <p/>
      * This method also rebuilds the {@link #excludesList}. This list contains
      * URL paths that should not be auto-mapped.
@@ -252,11 +323,70 @@ public class ClickClickConfigService extends XmlConfigService {
 
             excludesList.add(new XmlConfigService.ExcludesElm((Element) i.next()));
         }
+
+        indexTemplates(pagesPackage, templates);
+    }
+
+    /**
+     * Index the Page class names of the given templates for the given pages
+     * package. The templates are split across a thread per processor.
+     * Templates which are already indexed for a previous pages package, or
+     * which are excluded, are skipped.
+     *
+     * @param pagesPackage the pages package prefix
+     * @param templates the list of template paths
+     */
+    void indexTemplates(final String pagesPackage, final List templates) {
+        if (templates.isEmpty()) {
+            return;
+        }
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final ClassLoader classLoader = contextClassLoader != null
+            ? contextClassLoader : getClass().getClassLoader();
+
+        int threadCount = Math.min(Runtime.getRuntime().availableProcessors(),
+            templates.size());
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int i = 0; i < threadCount; i++) {
+            final int first = i;
+            final int step = threadCount;
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    for (int j = first; j < templates.size(); j += step) {
+                        String path = (String) templates.get(j);
+                        String className =
+                            findPageClassName(path, pagesPackage, classLoader);
+                        if (className != null) {
+                            pageIndex.putIfAbsent(path, className);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Object>> futures = executor.invokeAll(tasks);
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            // The index is incomplete, missing paths are resolved on request
+            getLogService().warn("Could not index page templates", e);
+        } finally {
+            executor.shutdown();
+        }
+
+        if (getLogService().isDebugEnabled()) {
+            getLogService().debug("indexed " + pageIndex.size()
+                + " page templates");
+        }
     }
 
     /**
      * In Production modes delegate to the super implementation. In development
-     * modes this method builds the {@link #manualPageByClassNameMap} by using
+     * modes this method builds the {@link #manualPageIndex} by using
      * the Page Class name instead of the Page Class. Thus no reference to the
      * class is stored and it can be reloaded. Further only manually mapped
      * pages will be stored by this method as automapped pages are looked up
@@ -268,29 +398,177 @@ public class ClickClickConfigService extends XmlConfigService {
             return;
         }
 
-        // Build pages by className map
-        for (Iterator i = pageByPathMap.values().iterator(); i.hasNext();) {
-            PageMetaData page = (PageMetaData) i.next();
+        // Build the manually mapped paths by className index
+        manualPageIndex.clear();
+        for (Iterator<PageMetaData> i = manualPageByPathMap.values().iterator(); i.hasNext();) {
+            PageMetaData page = i.next();
+            manualPageIndex.put(page.getPath(), page.getPageClassName());
+        }
+    }
 
-            Object value = manualPageByClassNameMap.get(page.pageClassName);
+    /**
+     * Return the cached public fields of the given Page class, which are read
+     * on the first request.
+     *
+     * @param pageClass the page class
+     * @return the public fields of the given page class
+     */
+    private PageFields getCachedPageFields(Class pageClass) {
+        PageFields pageFields = pageFieldsCache.get(pageClass);
+        if (pageFields == null) {
+            // Concurrent threads may read the same fields, which is harmless
+            pageFields = new PageFields(pageClass.getFields());
+            pageFieldsCache.put(pageClass, pageFields);
+        }
+        return pageFields;
+    }
 
-            if (value == null) {
-                manualPageByClassNameMap.put(page.pageClassName, page);
+    /**
+     * Resolve the Page class of the given path in development modes, from the
+     * manually mapped pages or else from the page packages.
+     *
+     * @param path the page path
+     * @return the page class for the given path or null if no class is found
+     */
+    private Class<? extends Page> resolvePageClass(String path) {
+        // Try and load the manually mapped page first
+        PageMetaData page = lookupManuallyStoredMetaData(path);
 
-            } else if (value instanceof List) {
-                ((List) value).add(value);
+        if (page != null) {
+            try {
+                return (Class<? extends Page>) ClickUtils.classForName(page.getPageClassName());
+            } catch (ClassNotFoundException ex) {
+                // ignore, this class is not available, so try and load
+                // it from the classpath
+            }
+        }
 
-            } else if (value instanceof PageMetaData) {
-                List list = new ArrayList();
-                list.add(value);
-                list.add(page);
-                manualPageByClassNameMap.put(page.pageClassName, list);
+        // Automapped pages require their template, as in production modes
+        if (!hasTemplate(path)) {
+            return null;
+        }
 
+        // Next try the indexed class name
+        String className = pageIndex.getClassName(path);
+        if (className != null) {
+            try {
+                Class<?> indexedClass = ClickUtils.classForName(className);
+                if (Page.class.isAssignableFrom(indexedClass)) {
+                    return indexedClass.asSubclass(Page.class);
+                }
+            } catch (ClassNotFoundException ex) {
+                // The class was removed, resolve the path again
+            }
+            pageIndex.remove(path);
+        }
+
+        Class pageClass = null;
+
+        for (int i = 0; i < pagePackages.size(); i++) {
+            String pagesPackage = pagePackages.get(i).toString();
+
+            pageClass = getPageClass(path, pagesPackage);
+
+            if (pageClass != null) {
+                pageIndex.put(path, pageClass.getName());
+                break;
+            }
+        }
+
+        return pageClass;
+    }
+
+    /**
+     * Return true if the given path is manually mapped to the given Page
+     * class.
+     *
+     * @param path the page path
+     * @param pageClass the page class resolved for the path
+     * @return true if the path is manually mapped to the Page class
+     */
+    private boolean isManuallyMapped(String path, Class pageClass) {
+        PageMetaData page = lookupManuallyStoredMetaData(path);
+        return page != null
+            && page.getPageClassName().equals(pageClass.getName());
+    }
+
+    /**
+     * Return true if the servlet context contains the template of the given
+     * path.
+     *
+     * @param path the page path
+     * @return true if the template of the given path exists
+     */
+    private boolean hasTemplate(String path) {
+        try {
+            return getServletContext().getResource(path) != null;
+
+        } catch (MalformedURLException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Return the name of the Page class of the given template path and pages
+     * package, or null if there is no matching class file. The class name is
+     * derived the same way as {@link #getPageClass(java.lang.String, java.lang.String)}
+     * does, but the class is not loaded.
+     *
+     * @param pagePath the template path, for example <tt>"/edit-customer.htm"</tt>
+     * @param pagesPackage the pages package prefix
+     * @param classLoader the ClassLoader to find the class files with
+     * @return the Page class name of the given template path, or null
+     */
+    private String findPageClassName(String pagePath, String pagesPackage,
+        ClassLoader classLoader) {
+
+        int index = pagePath.lastIndexOf(".");
+        if (index < 0) {
+            return null;
+        }
+        String path = pagePath.substring(0, index);
+
+        // Excluded paths are resolved on request
+        for (int i = 0; i < excludesList.size(); i++) {
+            if (((XmlConfigService.ExcludesElm) excludesList.get(i)).isMatch(path)) {
+                return null;
+            }
+        }
+
+        HtmlStringBuffer buffer = new HtmlStringBuffer();
+        if (StringUtils.isNotBlank(pagesPackage)) {
+            buffer.append(pagesPackage).append(".");
+        }
+
+        // '/admin/edit-customer' becomes 'admin.' and 'EditCustomer'
+        StringTokenizer tokenizer = new StringTokenizer(path, "/");
+        String name = "";
+        while (tokenizer.hasMoreTokens()) {
+            String token = tokenizer.nextToken();
+            if (tokenizer.hasMoreTokens()) {
+                buffer.append(token).append(".");
             } else {
-                // should never occur
-                throw new IllegalStateException();
+                name = token;
+            }
+        }
+        tokenizer = new StringTokenizer(name, "_-");
+        while (tokenizer.hasMoreTokens()) {
+            String token = tokenizer.nextToken();
+            buffer.append(Character.toUpperCase(token.charAt(0)));
+            buffer.append(token.substring(1));
+        }
+
+        String className = buffer.toString();
+        if (classLoader.getResource(className.replace('.', '/') + ".class") != null) {
+            return className;
+        }
+        if (!className.endsWith("Page")) {
+            className += "Page";
+            if (classLoader.getResource(className.replace('.', '/') + ".class") != null) {
+                return className;
             }
         }
+        return null;
     }
 
     /**
@@ -301,10 +579,10 @@ public class ClickClickConfigService extends XmlConfigService {
      */
     private PageMetaData lookupManuallyStoredMetaData(String path) {
         //Try and load the manually mapped page
-        PageMetaData page = (PageMetaData) manualPageByPathMap.get(path);
+        PageMetaData page = manualPageByPathMap.get(path);
         if (page == null) {
             String jspPath = StringUtils.replace(path, ".htm", ".jsp");
-            page = (PageMetaData) manualPageByPathMap.get(jspPath);
+            page = manualPageByPathMap.get(jspPath);
         }
         return page;
     }
@@ -314,27 +592,77 @@ public class ClickClickConfigService extends XmlConfigService {
      *
      * @param pageClass the page class
      * @return the PageMetaData object for the given page class
+     * @throws IllegalArgumentException if the Page Class is manually mapped to
+     * multiple paths
      */
     private PageMetaData lookupManuallyStoredMetaData(Class pageClass) {
         //Try and load the manually mapped page
-        PageMetaData page = null;
-        Object object = (PageMetaData) manualPageByClassNameMap.get(pageClass);
-        if (object instanceof PageMetaData) {
-            page = (PageMetaData) object;
-            return page;
+        String[] paths = manualPageIndex.getPaths(pageClass.getName());
+        if (paths.length == 0) {
+            return null;
 
-        } else if (object instanceof List) {
+        } else if (paths.length > 1) {
             String msg =
                 "Page class resolves to multiple paths: " + pageClass.getName();
             throw new IllegalArgumentException(msg);
-
         }
 
-        return page;
+        return manualPageByPathMap.get(paths[0]);
     }
 
     // ---------------------------------------------------------- Inner Classes
 
+    /**
+     * Provides a cached Page class and path.
+     */
+    static class PageClassEntry {
+
+        /** The Page class. */
+        final Class<? extends Page> pageClass;
+
+        /**
+         * The path of the Page class, or null if the path is not known. In the
+         * Page class cache only manually mapped pages have a path.
+         */
+        final String path;
+
+        /** The ClassLoader the Page class was resolved with. */
+        final ClassLoader classLoader;
+
+        /** The cache version the Page class was resolved in. */
+        final int version;
+
+        PageClassEntry(Class<? extends Page> pageClass, String path,
+            ClassLoader classLoader, int version) {
+            this.pageClass = pageClass;
+            this.path = path;
+            this.classLoader = classLoader;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Provides the public fields of a Page class.
+     */
+    static class PageFields {
+
+        /** The public fields. */
+        final Field[] fieldArray;
+
+        /** The public fields by name. */
+        final Map<String, Field> fieldMap;
+
+        PageFields(Field[] fieldArray) {
+            this.fieldArray = fieldArray;
+            Map<String, Field> fields = new HashMap<String, Field>();
+            for (int i = 0; i < fieldArray.length; i++) {
+                Field field = fieldArray[i];
+                fields.put(field.getName(), field);
+            }
+            this.fieldMap = Collections.unmodifiableMap(fields);
+        }
+    }
+
     /**
      * Encapsulate a Page metadata such as headers, classname and path.
      */
@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.click.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides a thread-safe index between page paths and Page class names, in
+ * both directions.
+ * <p/>
+ * Class names are indexed instead of classes, so that the index stays valid
+ * when Page classes are reloaded. Lookups do not lock, updates are
+ * synchronized so both directions stay consistent.
+ */
+class PageIndex {
+
+    // -------------------------------------------------------------- Constants
+
+    /** The paths of a class name which is not indexed. */
+    private static final String[] NO_PATHS = new String[0];
+
+    // -------------------------------------------------------------- Variables
+
+    /** The Page class names by path. */
+    private final Map<String, String> classNameByPath =
+        new ConcurrentHashMap<String, String>();
+
+    /** The paths by Page class name. */
+    private final Map<String, String[]> pathsByClassName =
+        new ConcurrentHashMap<String, String[]>();
+
+    // ------------------------------------------------ Package Private Methods
+
+    /**
+     * Return the Page class name of the given path, or null if the path is
+     * not indexed.
+     *
+     * @param path the page path
+     * @return the Page class name of the given path, or null
+     */
+    String getClassName(String path) {
+        return classNameByPath.get(path);
+    }
+
+    /**
+     * Return the paths of the given Page class name, or an empty array if the
+     * class name is not indexed.
+     *
+     * @param className the Page class name
+     * @return the paths of the given Page class name
+     */
+    String[] getPaths(String className) {
+        String[] paths = pathsByClassName.get(className);
+        return paths == null ? NO_PATHS : paths;
+    }
+
+    /**
+     * Index the given path and Page class name, replacing the class name
+     * previously indexed for the path.
+     *
+     * @param path the page path
+     * @param className the Page class name
+     */
+    synchronized void put(String path, String className) {
+        String previous = classNameByPath.put(path, className);
+        if (className.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            removePath(previous, path);
+        }
+        String[] paths = getPaths(className);
+        String[] newPaths = new String[paths.length + 1];
+        System.arraycopy(paths, 0, newPaths, 0, paths.length);
+        newPaths[paths.length] = path;
+        pathsByClassName.put(className, newPaths);
+    }
+
+    /**
+     * Index the given path and Page class name, unless the path is already
+     * indexed.
+     *
+     * @param path the page path
+     * @param className the Page class name
+     * @return true if the path was indexed, false if it was already indexed
+     */
+    synchronized boolean putIfAbsent(String path, String className) {
+        if (classNameByPath.containsKey(path)) {
+            return false;
+        }
+        put(path, className);
+        return true;
+    }
+
+    /**
+     * Remove the given path from the index.
+     *
+     * @param path the page path
+     */
+    synchronized void remove(String path) {
+        String className = classNameByPath.remove(path);
+        if (className != null) {
+            removePath(className, path);
+        }
+    }
+
+    /**
+     * Remove all paths from the index.
+     */
+    synchronized void clear() {
+        classNameByPath.clear();
+        pathsByClassName.clear();
+    }
+
+    /**
+     * Return the number of indexed paths.
+     *
+     * @return the number of indexed paths
+     */
+    int size() {
+        return classNameByPath.size();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Remove the given path from the paths of the given class name.
+     *
+     * @param className the Page class name
+     * @param path the page path
+     */
+    private void removePath(String className, String path) {
+        String[] paths = getPaths(className);
+        if (paths.length <= 1) {
+            pathsByClassName.remove(className);
+            return;
+        }
+        String[] newPaths = new String[paths.length - 1];
+        int index = 0;
+        for (int i = 0; i < paths.length; i++) {
+            if (!paths[i].equals(path) && index < newPaths.length) {
+                newPaths[index++] = paths[i];
+            }
+        }
+        pathsByClassName.put(className, newPaths);
+    }
+}
@@ -0,0 +1,54 @@
+package net.sf.clickclick.control.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+
+public class DataControlTest extends TestCase {
+
+    /**
+     * Map values must be found by the expression, or its upper or lower case
+     * variant.
+     */
+    public void testMapProperty() {
+        DataControl control = new DataControl();
+
+        Map<String, Object> upperCaseRow = new HashMap<String, Object>();
+        upperCaseRow.put("NAME", "John");
+        Map<String, Object> exactRow = new HashMap<String, Object>();
+        exactRow.put("Name", "Jane");
+        Map<String, Object> lowerCaseRow = new HashMap<String, Object>();
+        lowerCaseRow.put("name", "Jim");
+
+        assertEquals("John", control.getProperty(upperCaseRow, "Name"));
+        assertEquals("John", control.getProperty(upperCaseRow, "Name"));
+        assertEquals("Jane", control.getProperty(exactRow, "Name"));
+        assertEquals("Jim", control.getProperty(lowerCaseRow, "Name"));
+        assertNull(control.getProperty(new HashMap<String, Object>(), "Name"));
+        assertNull(control.getProperty(upperCaseRow, "age"));
+    }
+
+    /**
+     * The exact key must win over its upper and lower case variants, whatever
+     * the keys matched by other rows or other controls.
+     */
+    public void testMapPropertyOrder() {
+        DataControl control = new DataControl();
+        DataControl otherControl = new DataControl();
+
+        Map<String, Object> upperCaseRow = new HashMap<String, Object>();
+        upperCaseRow.put("NAME", "John");
+        Map<String, Object> bothCasesRow = new HashMap<String, Object>();
+        bothCasesRow.put("name", "Jane");
+        bothCasesRow.put("NAME", "JANE");
+
+        assertEquals("John", otherControl.getProperty(upperCaseRow, "name"));
+        assertEquals("John", control.getProperty(upperCaseRow, "name"));
+        assertEquals("Jane", control.getProperty(bothCasesRow, "name"));
+        assertEquals("Jane", otherControl.getProperty(bothCasesRow, "name"));
+        assertEquals("JANE", control.getProperty(bothCasesRow, "NAME"));
+
+        // Without the exact key, the upper case key wins
+        assertEquals("JANE", control.getProperty(bothCasesRow, "Name"));
+    }
+}
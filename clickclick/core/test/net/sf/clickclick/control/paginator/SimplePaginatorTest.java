@@ -0,0 +1,166 @@
+package net.sf.clickclick.control.paginator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import junit.framework.TestCase;
+import net.sf.clickclick.dataprovider.ItemCounter;
+import org.apache.click.MockContext;
+import org.apache.click.control.ActionLink;
+import org.apache.click.control.Table;
+import org.apache.click.util.HtmlStringBuffer;
+
+public class SimplePaginatorTest extends TestCase {
+
+    /**
+     * Page links must render the same as the control link itself.
+     */
+    public void testRenderPagingLink() {
+        MockContext.initContext();
+
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        paginator.setItemsPerPage(10);
+        paginator.setTotalItems(100);
+        String html = paginator.toString();
+
+        ActionLink link = new ActionLink("paginator");
+        for (int pageNumber = 2; pageNumber <= 10; pageNumber++) {
+            link.setLabel(String.valueOf(pageNumber));
+            link.setParameter(Table.PAGE, String.valueOf(pageNumber - 1));
+            link.setTitle(paginator.getGotoPageTitleMessage() + " " + pageNumber);
+            HtmlStringBuffer buffer = new HtmlStringBuffer();
+            link.render(buffer);
+            assertTrue(buffer.toString(), html.indexOf("<li>" + buffer + "</li>") >= 0);
+        }
+        assertTrue(html.indexOf("<li class=\"active\">1</li>") >= 0);
+
+        // The template markers must not leak into the output
+        assertEquals(-1, html.indexOf("ccpaginator"));
+    }
+
+    /**
+     * A page set before the request was read must not stop the paginator from
+     * reading the clicked page, and a page set afterwards must be kept.
+     */
+    public void testSetCurrentPage() {
+        MockContext context = MockContext.initContext();
+        context.getMockRequest().setParameter(ActionLink.ACTION_LINK, "paginator");
+        context.getMockRequest().setParameter(Table.PAGE, "4");
+
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        paginator.setCurrentPage(2);
+        assertEquals(4, paginator.getCurrentPage());
+
+        paginator.setCurrentPage(2);
+        assertEquals(2, paginator.getCurrentPage());
+
+        // The request is read again for the next request
+        paginator.onDestroy();
+        assertEquals(4, paginator.getCurrentPage());
+    }
+
+    /**
+     * The requested page keys must not survive the request, even if the
+     * current page is set before the request is read.
+     */
+    public void testPageKeysDestroyed() {
+        MockContext context = MockContext.initContext();
+        context.getMockRequest().setParameter(ActionLink.ACTION_LINK, "paginator");
+        context.getMockRequest().setParameter(SimplePaginator.AFTER, "c");
+
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        paginator.setKeysetMode(true);
+        assertEquals("c", paginator.getAfterKey());
+        paginator.onDestroy();
+
+        MockContext.initContext();
+        paginator.getCurrentPage();
+        paginator.setCurrentPage(1);
+        assertNull(paginator.getAfterKey());
+        assertNull(paginator.getBeforeKey());
+    }
+
+    /**
+     * Paginators of the same name on different pages must not share their
+     * count key.
+     */
+    public void testCountKey() {
+        MockContext context = MockContext.initContext();
+
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        assertEquals(context.getResourcePath() + "#paginator", paginator.getCountKey());
+        paginator.setCountKey("customers");
+        assertEquals("customers", paginator.getCountKey());
+    }
+
+    /**
+     * Keyset links must URL encode the keys and leave the control link as
+     * they found it.
+     */
+    public void testRenderKeysetLinks() {
+        MockContext.initContext();
+
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        paginator.setKeysetMode(true);
+        paginator.setPageKeys("a b", "c&d", true, true);
+        ActionLink link = paginator.getControlLink();
+        link.setLabel("Customers");
+        link.setParameter(SimplePaginator.AFTER, "e");
+        String html = paginator.toString();
+
+        assertTrue(html, html.indexOf("before=a+b") >= 0);
+        assertTrue(html, html.indexOf("after=c%26d") >= 0);
+        assertEquals(-1, html.indexOf("after=e"));
+        assertEquals("Customers", link.getLabel());
+        assertNull(link.getTitle());
+        assertEquals("e", link.getParameter(SimplePaginator.AFTER));
+        assertNull(link.getParameter(SimplePaginator.BEFORE));
+    }
+
+    /**
+     * An estimated count must be rendered until the background count ran.
+     */
+    public void testEstimatedCount() {
+        MockContext.initContext();
+
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        EstimatedCountStrategy strategy = new EstimatedCountStrategy(60000, new Executor() {
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+        ItemCounter counter = new ItemCounter() {
+            public int countItems() {
+                return 95;
+            }
+
+            public int estimateItems() {
+                return 120;
+            }
+        };
+
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        paginator.setItemsPerPage(10);
+        paginator.setCountStrategy(strategy);
+        paginator.setItemCounter(counter);
+        assertEquals(120, paginator.getTotalItems());
+        assertTrue(paginator.isTotalItemsEstimated());
+        String html = paginator.toString();
+        assertTrue(html, html.indexOf("Page 1 of ~12") >= 0);
+        assertTrue(html, html.indexOf("last-off") >= 0);
+
+        // Only one background count must be scheduled per key
+        paginator.onDestroy();
+        paginator.getTotalItems();
+        assertEquals(1, tasks.size());
+        assertTrue(strategy.isCounting(paginator.getCountKey()));
+        tasks.get(0).run();
+        assertFalse(strategy.isCounting(paginator.getCountKey()));
+
+        paginator.onDestroy();
+        assertEquals(95, paginator.getTotalItems());
+        assertFalse(paginator.isTotalItemsEstimated());
+        html = paginator.toString();
+        assertEquals(-1, html.indexOf("~"));
+    }
+}
@@ -0,0 +1,597 @@
+package net.sf.clickclick.control.repeater;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import junit.framework.AssertionFailedError;
+import junit.framework.TestCase;
+import net.sf.clickclick.control.paginator.ExactCountStrategy;
+import net.sf.clickclick.control.paginator.SimplePaginator;
+import net.sf.clickclick.dataprovider.ItemCounter;
+import net.sf.clickclick.dataprovider.KeysetDataProvider;
+import net.sf.clickclick.dataprovider.PrefetchingDataProvider;
+import net.sf.clickclick.dataprovider.RangeDataProvider;
+import net.sf.clickclick.domain.Customer;
+import org.apache.click.MockContext;
+import org.apache.click.control.ActionLink;
+import org.apache.click.control.FieldSet;
+import org.apache.click.control.Form;
+import org.apache.click.control.HiddenField;
+import org.apache.click.control.TextField;
+import org.apache.click.dataprovider.DataProvider;
+
+public class RepeaterTest extends TestCase {
+
+    /**
+     * Rows must follow their items when items are moved or removed.
+     */
+    public void testMoveAndRemoveItems() {
+        MockContext.initContext();
+        List<Customer> customers = createCustomers(4);
+        Repeater repeater = createRepeater(customers);
+
+        Customer first = customers.get(0);
+        Customer last = customers.get(3);
+        RepeaterRow firstRow = (RepeaterRow) repeater.getControls().get(0);
+
+        repeater.moveDown(first);
+        assertSame(first, repeater.getItems().get(1));
+        assertSame(firstRow, repeater.getControls().get(1));
+
+        repeater.moveUp(first);
+        assertSame(first, repeater.getItems().get(0));
+        assertSame(firstRow, repeater.getControls().get(0));
+
+        // Moving past the boundaries has no effect
+        repeater.moveUp(first);
+        repeater.moveDown(last);
+        assertSame(first, repeater.getItems().get(0));
+        assertSame(last, repeater.getItems().get(3));
+
+        repeater.removeItem(first);
+        assertEquals(3, repeater.getItems().size());
+        assertEquals(3, repeater.getControls().size());
+        assertFalse(repeater.getControls().contains(firstRow));
+
+        Customer added = createCustomers(1).get(0);
+        repeater.addItem(added);
+        repeater.moveUp(added);
+        assertSame(added, repeater.getItems().get(2));
+        assertSame(last, repeater.getItems().get(3));
+    }
+
+    /**
+     * Inserting and removing items must shift the item index rather than
+     * discard it.
+     */
+    public void testInsertAndRemoveItems() {
+        MockContext.initContext();
+        List<Customer> customers = createCustomers(5);
+        final int[] invalidations = new int[1];
+        Repeater repeater = new Repeater("repeater") {
+            public void buildRow(Object item, RepeaterRow row, int index) {
+                row.add(new TextField("name"));
+            }
+
+            protected void invalidateItemIndex() {
+                invalidations[0]++;
+                super.invalidateItemIndex();
+            }
+        };
+        repeater.setDataProvider(createDataProvider(customers));
+        Customer first = customers.get(0);
+        Customer second = customers.get(1);
+        Customer third = customers.get(2);
+        Customer fourth = customers.get(3);
+        repeater.removeItem(customers.get(4));
+        invalidations[0] = 0;
+
+        Customer inserted = createCustomers(1).get(0);
+        repeater.insertItem(inserted, 1);
+        repeater.insertItem(fourth, 0);
+        assertEquals(0, repeater.indexOfItem(fourth));
+        assertEquals(1, repeater.indexOfItem(first));
+        assertEquals(2, repeater.indexOfItem(inserted));
+        assertEquals(3, repeater.indexOfItem(second));
+
+        // The first occurrence of a duplicate is removed first
+        repeater.removeItem(fourth);
+        assertEquals(0, repeater.indexOfItem(first));
+        assertEquals(4, repeater.indexOfItem(fourth));
+
+        repeater.removeItem(first);
+        repeater.removeItem(inserted);
+        assertEquals(0, repeater.indexOfItem(second));
+        assertEquals(1, repeater.indexOfItem(third));
+        assertEquals(-1, repeater.indexOfItem(inserted));
+        assertEquals(3, repeater.getControls().size());
+
+        repeater.moveUp(third);
+        assertEquals(0, repeater.indexOfItem(third));
+        assertEquals(1, repeater.indexOfItem(second));
+
+        // Only the removed duplicate required the index to be rebuilt
+        assertEquals(1, invalidations[0]);
+    }
+
+    /**
+     * Items must be copied to and from their own rows.
+     */
+    public void testCopyItems() {
+        MockContext.initContext();
+        List<Customer> customers = createCustomers(3);
+        Repeater repeater = createRepeater(customers);
+
+        repeater.moveDown(customers.get(0));
+
+        // Field names must match item properties while copying
+        repeater.removeIndexFromControlNames();
+        repeater.copyFromItems();
+        for (int i = 0; i < 3; i++) {
+            RepeaterRow row = (RepeaterRow) repeater.getControls().get(i);
+            TextField field = (TextField) row.getControls().get(0);
+            assertEquals(((Customer) repeater.getItems().get(i)).getName(), field.getValue());
+            field.setValue("name" + i);
+        }
+
+        repeater.copyToItems();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("name" + i, ((Customer) repeater.getItems().get(i)).getName());
+        }
+    }
+
+    /**
+     * With an item key, an equal but not identical item must find the row.
+     */
+    public void testItemKey() {
+        MockContext.initContext();
+        List<Customer> customers = createCustomers(3);
+        Repeater repeater = createRepeater(customers);
+        repeater.setItemKey("id");
+
+        Customer last = customers.get(2);
+        Customer copy = new Customer();
+        copy.setId(last.getId());
+        repeater.moveUp(copy);
+        assertSame(last, repeater.getItems().get(1));
+
+        // Without an item key the copy is not found
+        repeater.setItemKey(null);
+        repeater.moveUp(copy);
+        assertSame(last, repeater.getItems().get(1));
+    }
+
+    /**
+     * With indexed naming, rows keep indexed names and are only renamed when
+     * their index changes.
+     */
+    public void testIndexedNaming() {
+        MockContext.initContext();
+        List<Customer> customers = createCustomers(3);
+        Repeater repeater = createRepeater(customers, true);
+
+        TextField firstField = getNameField(repeater, 0);
+        assertEquals("name_0", firstField.getName());
+        assertEquals(0, ((RepeaterRow) repeater.getControls().get(0)).getIndex());
+
+        // Names are indexed while processing
+        repeater.onProcess();
+        assertEquals("name_0", firstField.getName());
+
+        // Copying uses the plain names and restores the indexed names
+        repeater.copyFromItems();
+        assertEquals("customer0", firstField.getValue());
+        assertEquals("name_0", firstField.getName());
+
+        repeater.moveDown(customers.get(0));
+        repeater.insertItem(createCustomers(1).get(0), 0);
+        repeater.updateRowIndexes();
+        for (int i = 0; i < 4; i++) {
+            assertEquals("name_" + i, getNameField(repeater, i).getName());
+        }
+        assertEquals("name_2", firstField.getName());
+    }
+
+    /**
+     * With indexed naming, controls added after the row was built must be
+     * indexed too.
+     */
+    public void testIndexedNamingAddedControls() {
+        MockContext.initContext();
+        Repeater repeater = new Repeater("repeater") {
+            public void buildRow(Object item, RepeaterRow row, int index) {
+                FieldSet fieldSet = new FieldSet("address");
+                fieldSet.add(new TextField("street"));
+                row.add(fieldSet);
+            }
+        };
+        repeater.setIndexedNaming(true);
+        repeater.setDataProvider(createDataProvider(createCustomers(2)));
+
+        for (int i = 0; i < 2; i++) {
+            RepeaterRow row = (RepeaterRow) repeater.getControls().get(i);
+            row.add(new TextField("name"));
+            FieldSet fieldSet = (FieldSet) row.getControls().get(0);
+            fieldSet.add(new TextField("city"));
+        }
+        repeater.updateRowIndexes();
+
+        for (int i = 0; i < 2; i++) {
+            RepeaterRow row = (RepeaterRow) repeater.getControls().get(i);
+            FieldSet fieldSet = (FieldSet) row.getControls().get(0);
+            assertEquals("address_" + i, fieldSet.getName());
+            assertEquals("street_" + i, fieldSet.getFieldList().get(0).getName());
+            assertEquals("city_" + i, fieldSet.getFieldList().get(1).getName());
+            assertEquals("name_" + i, row.getControls().get(1).getName());
+        }
+
+        // Renaming twice must not index the indexed names
+        repeater.insertItem(createCustomers(1).get(0), 0);
+        repeater.updateRowIndexes();
+        RepeaterRow row = (RepeaterRow) repeater.getControls().get(2);
+        assertEquals("name_2", row.getControls().get(1).getName());
+    }
+
+    /**
+     * With a window, rows must only be built for the items in the window.
+     */
+    public void testWindow() {
+        MockContext.initContext();
+        final List<Customer> customers = createCustomers(100);
+        Repeater repeater = createRepeater();
+        repeater.setFirstItem(10);
+        repeater.setMaxItems(5);
+        repeater.setDataProvider(new DataProvider() {
+            public Iterable<Customer> getData() {
+                // Not a List, so the data is iterated
+                return new LinkedHashSet<Customer>(customers);
+            }
+        });
+
+        assertEquals(5, repeater.getControls().size());
+        assertEquals(5, repeater.getItems().size());
+        assertSame(customers.get(10), repeater.getItems().get(0));
+
+        // Copying works on the rows of the window
+        TextField field = getNameField(repeater, 4);
+        field.setValue("changed");
+        repeater.removeIndexFromControlNames();
+        repeater.copyToItems();
+        assertEquals("changed", customers.get(14).getName());
+    }
+
+    /**
+     * With a paginator, rows must only be built for the current page.
+     */
+    public void testPaginatorWindow() {
+        MockContext.initContext();
+        Repeater repeater = createRepeater();
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        repeater.setMaxItems(10);
+        repeater.setPaginator(paginator);
+        repeater.setDataProvider(createDataProvider(createCustomers(95)));
+
+        assertEquals(10, repeater.getControls().size());
+        assertEquals(95, paginator.getTotalItems());
+        assertEquals(10, paginator.getItemsPerPage());
+        assertEquals(0, repeater.getFirstItem());
+    }
+
+    /**
+     * Posted rows must be rebuilt for the window they were rendered in, even
+     * though the paginator link was not clicked.
+     */
+    public void testPostedWindow() {
+        MockContext context = MockContext.initContext();
+        context.getMockRequest().setParameter("repeater_firstItem", "20");
+        List<Customer> customers = createCustomers(95);
+        Form form = new Form("form");
+        Repeater repeater = createRepeater();
+        form.add(repeater);
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        repeater.setMaxItems(10);
+        repeater.setPaginator(paginator);
+        repeater.setDataProvider(createDataProvider(customers));
+        repeater.onInit();
+
+        assertEquals(2, paginator.getCurrentPage());
+        assertSame(customers.get(20), repeater.getItems().get(0));
+        assertEquals(0, repeater.getFirstItem());
+
+        // The window must be copied, not a view of the data provider list
+        repeater.getItems().clear();
+        assertEquals(95, customers.size());
+
+        HiddenField field = (HiddenField) form.getField("repeater_firstItem");
+        assertNotNull(field);
+        repeater.new InternalBehavior().preResponse(repeater);
+        assertEquals("20", field.getValue());
+    }
+
+    /**
+     * With a RangeDataProvider, only the current page must be fetched.
+     */
+    public void testRangeDataProvider() {
+        MockContext.initContext();
+        final List<Customer> customers = createCustomers(95);
+        final int[] fetched = new int[1];
+        Repeater repeater = createRepeater();
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        repeater.setMaxItems(10);
+        repeater.setPaginator(paginator);
+        repeater.setDataProvider(new RangeDataProvider<Customer>() {
+            public List<Customer> getData() {
+                throw new AssertionFailedError("All data fetched");
+            }
+
+            public List<Customer> getData(int offset, int limit) {
+                fetched[0] += limit;
+                return customers.subList(offset, offset + limit);
+            }
+
+            public int size() {
+                return customers.size();
+            }
+        });
+
+        assertEquals(10, fetched[0]);
+        assertEquals(10, repeater.getControls().size());
+        assertEquals(95, paginator.getTotalItems());
+        assertSame(customers.get(0), repeater.getItems().get(0));
+    }
+
+    /**
+     * The counter set on the paginator must count the current data provider.
+     */
+    public void testCountingPaginator() {
+        MockContext.initContext();
+        Repeater repeater = createRepeater();
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        paginator.setCountStrategy(new ExactCountStrategy());
+        repeater.setMaxItems(10);
+        repeater.setPaginator(paginator);
+        repeater.setDataProvider(createRangeDataProvider(createCustomers(95)));
+        assertEquals(95, paginator.getTotalItems());
+
+        repeater.setDataProvider(createRangeDataProvider(createCustomers(35)));
+        assertEquals(35, paginator.getTotalItems());
+
+        // An item counter set by the page is kept
+        ItemCounter counter = new ItemCounter() {
+            public int countItems() {
+                return 50;
+            }
+
+            public int estimateItems() {
+                return -1;
+            }
+        };
+        paginator.setItemCounter(counter);
+        repeater.setDataProvider(createRangeDataProvider(createCustomers(95)));
+        assertSame(counter, paginator.getItemCounter());
+        assertEquals(50, paginator.getTotalItems());
+    }
+
+    /**
+     * In keyset mode, the page following the requested key must be fetched.
+     */
+    public void testKeysetPaginator() {
+        MockContext context = MockContext.initContext();
+        context.getMockRequest().setParameter(ActionLink.ACTION_LINK, "paginator");
+        context.getMockRequest().setParameter(SimplePaginator.AFTER, "19");
+        final List<Customer> customers = createCustomers(35);
+        Repeater repeater = createRepeater();
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        paginator.setKeysetMode(true);
+        repeater.setMaxItems(10);
+        repeater.setPaginator(paginator);
+        repeater.setDataProvider(new KeysetDataProvider<Customer>() {
+            public List<Customer> getData() {
+                throw new AssertionFailedError("All data fetched");
+            }
+
+            public List<Customer> getDataAfter(String key, int limit) {
+                int offset = key == null ? 0 : Integer.parseInt(key) + 1;
+                return customers.subList(offset, Math.min(offset + limit, customers.size()));
+            }
+
+            public List<Customer> getDataBefore(String key, int limit) {
+                int end = Integer.parseInt(key);
+                return customers.subList(Math.max(end - limit, 0), end);
+            }
+
+            public String getKey(Customer item) {
+                return String.valueOf(item.getId());
+            }
+        });
+
+        assertEquals(10, repeater.getControls().size());
+        assertSame(customers.get(20), repeater.getItems().get(0));
+        String html = paginator.toString();
+        assertTrue(html, html.indexOf("before=20") >= 0);
+        assertTrue(html, html.indexOf("after=29") >= 0);
+    }
+
+    /**
+     * In keyset mode, a posted form must rebuild the rows of the page it was
+     * rendered with.
+     */
+    public void testPostedKeysetPage() {
+        MockContext context = MockContext.initContext();
+        context.getMockRequest().setParameter("repeater_pageKey", "before:30");
+        final List<Customer> customers = createCustomers(35);
+        Form form = new Form("form");
+        Repeater repeater = createRepeater();
+        form.add(repeater);
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        paginator.setKeysetMode(true);
+        repeater.setMaxItems(10);
+        repeater.setPaginator(paginator);
+        repeater.setDataProvider(new KeysetDataProvider<Customer>() {
+            public List<Customer> getData() {
+                throw new AssertionFailedError("All data fetched");
+            }
+
+            public List<Customer> getDataAfter(String key, int limit) {
+                int offset = key == null ? 0 : Integer.parseInt(key) + 1;
+                return customers.subList(offset, Math.min(offset + limit, customers.size()));
+            }
+
+            public List<Customer> getDataBefore(String key, int limit) {
+                int end = Integer.parseInt(key);
+                return customers.subList(Math.max(end - limit, 0), end);
+            }
+
+            public String getKey(Customer item) {
+                return String.valueOf(item.getId());
+            }
+        });
+        repeater.onInit();
+
+        assertEquals(10, repeater.getControls().size());
+        assertSame(customers.get(20), repeater.getItems().get(0));
+
+        HiddenField field = (HiddenField) form.getField("repeater_pageKey");
+        assertNotNull(field);
+        assertNull(form.getField("repeater_firstItem"));
+        repeater.new InternalBehavior().preResponse(repeater);
+        assertEquals("before:30", field.getValue());
+    }
+
+    /**
+     * After the paginator rendered, the next page must be served from memory.
+     */
+    public void testPrefetchingDataProvider() {
+        MockContext.initContext();
+        final List<Customer> customers = createCustomers(95);
+        final int[] fetched = new int[1];
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        PrefetchingDataProvider<Customer> dataProvider = new PrefetchingDataProvider<Customer>(
+            "customers", new RangeDataProvider<Customer>() {
+            public List<Customer> getData() {
+                throw new AssertionFailedError("All data fetched");
+            }
+
+            public List<Customer> getData(int offset, int limit) {
+                fetched[0] += limit;
+                return customers.subList(offset, offset + limit);
+            }
+
+            public int size() {
+                return customers.size();
+            }
+        });
+        dataProvider.setExecutor(new Executor() {
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+
+        Repeater repeater = createRepeater();
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        repeater.setMaxItems(10);
+        repeater.setPaginator(paginator);
+        repeater.setDataProvider(dataProvider);
+        assertEquals(10, repeater.getControls().size());
+        assertSame(dataProvider, paginator.getPagePrefetcher());
+
+        // Only the next page exists, so only the next page is prefetched
+        paginator.toString();
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(20, fetched[0]);
+
+        List<Customer> nextPage = (List<Customer>) dataProvider.getData(10, 10);
+        assertEquals(20, fetched[0]);
+        assertSame(customers.get(10), nextPage.get(0));
+    }
+
+    /**
+     * Without a session, ranges must be fetched directly and no session must
+     * be created.
+     */
+    public void testPrefetchingWithoutSession() {
+        MockContext context = MockContext.initContext();
+        context.getMockRequest().setHttpSession(null);
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        PrefetchingDataProvider<Customer> dataProvider = new PrefetchingDataProvider<Customer>(
+            "customers", createRangeDataProvider(createCustomers(95)));
+        dataProvider.setExecutor(new Executor() {
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+
+        Repeater repeater = createRepeater();
+        SimplePaginator paginator = new SimplePaginator("paginator");
+        repeater.setMaxItems(10);
+        repeater.setPaginator(paginator);
+        repeater.setDataProvider(dataProvider);
+        assertEquals(10, repeater.getControls().size());
+
+        paginator.toString();
+        assertEquals(0, tasks.size());
+        assertFalse(context.hasSession());
+    }
+
+    private TextField getNameField(Repeater repeater, int index) {
+        RepeaterRow row = (RepeaterRow) repeater.getControls().get(index);
+        return (TextField) row.getControls().get(0);
+    }
+
+    private Repeater createRepeater(List<Customer> customers) {
+        return createRepeater(customers, false);
+    }
+
+    private Repeater createRepeater(List<Customer> customers, boolean indexedNaming) {
+        Repeater repeater = createRepeater();
+        repeater.setIndexedNaming(indexedNaming);
+        repeater.setDataProvider(createDataProvider(customers));
+        return repeater;
+    }
+
+    private Repeater createRepeater() {
+        return new Repeater("repeater") {
+            public void buildRow(Object item, RepeaterRow row, int index) {
+                row.add(new TextField("name"));
+            }
+        };
+    }
+
+    private DataProvider createDataProvider(final List<Customer> customers) {
+        return new DataProvider() {
+            public List<Customer> getData() {
+                return customers;
+            }
+        };
+    }
+
+    private RangeDataProvider<Customer> createRangeDataProvider(
+        final List<Customer> customers) {
+        return new RangeDataProvider<Customer>() {
+            public List<Customer> getData() {
+                throw new AssertionFailedError("All data fetched");
+            }
+
+            public List<Customer> getData(int offset, int limit) {
+                return customers.subList(offset, offset + limit);
+            }
+
+            public int size() {
+                return customers.size();
+            }
+        };
+    }
+
+    private List<Customer> createCustomers(int count) {
+        List<Customer> customers = new ArrayList<Customer>();
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer();
+            customer.setId(new Long(i));
+            customer.setName("customer" + i);
+            customers.add(customer);
+        }
+        return customers;
+    }
+}
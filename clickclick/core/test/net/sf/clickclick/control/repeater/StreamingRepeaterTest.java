@@ -0,0 +1,86 @@
+package net.sf.clickclick.control.repeater;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import net.sf.clickclick.control.data.DataRow;
+import net.sf.clickclick.domain.Customer;
+import org.apache.click.MockContext;
+import org.apache.click.control.TextField;
+import org.apache.click.dataprovider.DataProvider;
+
+public class StreamingRepeaterTest extends TestCase {
+
+    /**
+     * Rows must be rendered in order without being kept by the Repeater.
+     */
+    public void testRenderToWriter() throws Exception {
+        MockContext.initContext();
+        StreamingRepeater repeater = new StreamingRepeater("repeater") {
+            public void buildRow(Object item, RepeaterRow row, int index) {
+                TextField field = new TextField("name");
+                field.setValue(item.toString());
+                row.add(field);
+            }
+        };
+        repeater.setChunkSize(64);
+        repeater.setFirstItem(2);
+        repeater.setMaxItems(50);
+        repeater.setDataProvider(new DataProvider() {
+            public List<String> getData() {
+                List<String> items = new ArrayList<String>();
+                for (int i = 0; i < 100; i++) {
+                    items.add("item" + i);
+                }
+                return items;
+            }
+        });
+
+        StringWriter writer = new StringWriter();
+        repeater.render(writer);
+        String output = writer.toString();
+
+        assertEquals(0, repeater.getControls().size());
+        assertTrue(output.indexOf("name=\"name_0\"") >= 0);
+        assertTrue(output.indexOf("value=\"item2\"") >= 0);
+        assertTrue(output.indexOf("name=\"name_49\"") >= 0);
+        assertTrue(output.indexOf("value=\"item52\"") < 0);
+        assertEquals(output, repeater.toString());
+    }
+
+    /**
+     * With a row template, the row must be built once and re-bound to every
+     * item.
+     */
+    public void testRowTemplate() {
+        MockContext.initContext();
+        final int[] builds = new int[1];
+        StreamingRepeater repeater = new StreamingRepeater("repeater") {
+            public void buildRow(Object item, RepeaterRow row, int index) {
+                builds[0]++;
+                DataRow dataRow = new DataRow();
+                row.add(dataRow);
+                dataRow.add(item, "name");
+            }
+        };
+        repeater.setRowTemplate(true);
+        repeater.setDataProvider(new DataProvider() {
+            public List<Customer> getData() {
+                List<Customer> customers = new ArrayList<Customer>();
+                for (int i = 0; i < 10; i++) {
+                    Customer customer = new Customer();
+                    customer.setName("customer" + i);
+                    customers.add(customer);
+                }
+                return customers;
+            }
+        });
+
+        String output = repeater.toString();
+        assertEquals(1, builds[0]);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(output.indexOf("customer" + i + "<") >= 0);
+        }
+    }
+}
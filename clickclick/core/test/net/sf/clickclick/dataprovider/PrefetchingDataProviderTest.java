@@ -0,0 +1,76 @@
+package net.sf.clickclick.dataprovider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.apache.click.MockContext;
+
+public class PrefetchingDataProviderTest extends TestCase {
+
+    /**
+     * A prefetch discarded by the default rejection policy must not keep its
+     * range marked as loading.
+     */
+    public void testDiscardedPrefetch() throws Exception {
+        MockContext.initContext();
+        final List<Integer> offsets =
+            Collections.synchronizedList(new ArrayList<Integer>());
+        PrefetchingDataProvider<Integer> dataProvider = new PrefetchingDataProvider<Integer>(
+            "numbers", new RangeDataProvider<Integer>() {
+            public List<Integer> getData() {
+                throw new UnsupportedOperationException();
+            }
+
+            public List<Integer> getData(int offset, int limit) {
+                offsets.add(Integer.valueOf(offset));
+                return Collections.nCopies(limit, Integer.valueOf(offset));
+            }
+
+            public int size() {
+                return 100;
+            }
+        });
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0,
+            TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(1),
+            new PrefetchingDataProvider.DiscardOldestPrefetchPolicy());
+        dataProvider.setExecutor(executor);
+
+        // Keep the worker busy, so that prefetches are queued
+        final CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        dataProvider.prefetch(0, 10);
+        dataProvider.prefetch(10, 10);
+
+        // The discarded prefetch of the first range can be scheduled again
+        dataProvider.prefetch(0, 10);
+        blocker.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(Integer.valueOf(0)), offsets);
+
+        // A prefetch rejected by the shut down executor is discarded too
+        dataProvider.prefetch(10, 10);
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(1));
+        dataProvider.setExecutor(executor);
+        dataProvider.prefetch(10, 10);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(10), offsets.get(1));
+    }
+}
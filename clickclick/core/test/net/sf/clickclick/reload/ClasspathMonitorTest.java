@@ -0,0 +1,111 @@
+package net.sf.clickclick.reload;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+public class ClasspathMonitorTest extends TestCase {
+
+    /**
+     * Added, changed and deleted class files must be detected.
+     */
+    public void testIsModified() throws Exception {
+        File dir = File.createTempFile("classes", "");
+        dir.delete();
+        File packageDir = new File(dir, "com/mycorp/page");
+        packageDir.mkdirs();
+        try {
+            File classFile = new File(packageDir, "HomePage.class");
+            write(classFile, 10);
+
+            ClasspathMonitor monitor = new ClasspathMonitor(new URL[] { dir.toURI().toURL(), null }, 0);
+            assertFalse(monitor.isModified());
+
+            // Other files are ignored
+            write(new File(packageDir, "home.htm"), 10);
+            assertFalse(monitor.isModified());
+
+            write(classFile, 20);
+            assertTrue(monitor.isModified());
+            assertFalse(monitor.isModified());
+
+            write(new File(packageDir, "EditPage.class"), 10);
+            assertTrue(monitor.isModified());
+
+            classFile.delete();
+            assertTrue(monitor.isModified());
+
+            // Changes are not checked before the check interval elapsed
+            monitor.setCheckInterval(60000);
+            write(classFile, 10);
+            assertFalse(monitor.isModified());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * The scanner must cache reloadable class files, and re-read changed ones.
+     */
+    public void testScan() throws Exception {
+        File dir = File.createTempFile("classes", "");
+        dir.delete();
+        File packageDir = new File(dir, "com/mycorp/page");
+        packageDir.mkdirs();
+        try {
+            File classFile = new File(packageDir, "HomePage.class");
+            write(classFile, 10);
+            File excludedFile = new File(packageDir, "AdminPage.class");
+            write(excludedFile, 10);
+
+            BytecodeCache cache = new BytecodeCache();
+            ClasspathScanner scanner = new ClasspathScanner(
+                new URL[] { dir.toURI().toURL() }, 0, cache,
+                Arrays.asList("com.mycorp"), Arrays.asList("com.mycorp.page.AdminPage"));
+
+            scanner.scan();
+            assertFalse(scanner.isModified());
+            assertEquals(1, cache.size());
+            assertEquals(10, cache.get(classFile, null, classFile.lastModified(), 10).length);
+
+            write(classFile, 20);
+            scanner.scan();
+            assertEquals(20, cache.get(classFile, null, classFile.lastModified(), 20).length);
+            assertTrue(scanner.isModified());
+
+            // The classpath is not walked again while it does not change
+            cache.remove(classFile, null);
+            scanner.scan();
+            assertEquals(0, cache.size());
+
+            // Deleted class files are removed from the cache
+            write(classFile, 30);
+            scanner.scan();
+            assertEquals(1, cache.size());
+            classFile.delete();
+            scanner.scan();
+            assertEquals(0, cache.size());
+            assertTrue(scanner.isModified());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private void write(File file, int length) throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[length]);
+        out.close();
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (int i = 0; i < children.length; i++) {
+                delete(children[i]);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,223 @@
+package net.sf.clickclick.reload;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.Set;
+import junit.framework.TestCase;
+import net.sf.clickclick.domain.Customer;
+import org.apache.click.service.ConfigService;
+import org.apache.click.service.ConsoleLogService;
+
+public class ReloadClassLoaderTest extends TestCase {
+
+    private static final String CUSTOMER = Customer.class.getName();
+
+    private static final String HOLDER = CustomerHolder.class.getName();
+
+    private static final String UPDATER = CustomerUpdater.class.getName();
+
+    private File dir;
+
+    /**
+     * Referenced classes must be read from the class file.
+     */
+    public void testClassDependencies() throws Exception {
+        Set<String> dependencies = ClassDependencyReader.read(readBytes(CustomerHolder.class));
+        assertTrue(dependencies.contains(CUSTOMER));
+        assertTrue(dependencies.contains("java.util.List"));
+    }
+
+    /**
+     * Class types following a primitive in a method descriptor must be read,
+     * both from the declaring class and from its callers.
+     */
+    public void testPrimitiveThenClassParameter() throws Exception {
+        Set<String> dependencies = ClassDependencyReader.read(readBytes(CustomerUpdater.class));
+        assertTrue(dependencies.toString(), dependencies.contains(CUSTOMER));
+        dependencies = ClassDependencyReader.read(readBytes(CustomerUpdaterCaller.class));
+        assertTrue(dependencies.toString(), dependencies.contains(CUSTOMER));
+        assertTrue(dependencies.contains(CustomerUpdater.class.getName()));
+    }
+
+    /**
+     * A new generation must only reload changed classes and the classes
+     * referencing them.
+     */
+    public void testInheritClasses() throws Exception {
+        File customerFile = copyClass(Customer.class);
+        copyClass(CustomerHolder.class);
+
+        ReloadClassLoader first = createLoader();
+        Class customer = first.loadClass(CUSTOMER);
+        Class holder = first.loadClass(HOLDER);
+        assertNotSame(Customer.class, customer);
+
+        // Nothing changed, all classes are inherited
+        ReloadClassLoader second = createLoader();
+        assertEquals(2, second.inheritClasses(first));
+        assertSame(customer, second.loadClass(CUSTOMER));
+        assertSame(holder, second.loadClass(HOLDER));
+
+        // The holder references the changed customer class
+        customerFile.setLastModified(customerFile.lastModified() + 10000);
+        ReloadClassLoader third = createLoader();
+        assertEquals(0, third.inheritClasses(second));
+        assertNotSame(customer, third.loadClass(CUSTOMER));
+        assertNotSame(holder, third.loadClass(HOLDER));
+    }
+
+    /**
+     * A superseded generation whose classes are not inherited must not be
+     * kept alive by the generations before or after it.
+     */
+    public void testSupersededGenerationCollected() throws Exception {
+        copyClass(Customer.class);
+        copyClass(CustomerHolder.class);
+        File updaterFile = copyClass(CustomerUpdater.class);
+
+        ReloadClassLoader first = createLoader();
+        first.addInclude(UPDATER);
+        Class customer = first.loadClass(CUSTOMER);
+        first.loadClass(HOLDER);
+
+        WeakReference<ReloadClassLoader> second = createSecondGeneration(first);
+
+        // Only the updater of the second generation changed
+        updaterFile.setLastModified(updaterFile.lastModified() + 10000);
+        ReloadClassLoader third = createLoader();
+        third.addInclude(UPDATER);
+        assertEquals(2, third.inheritClasses(second.get()));
+        assertSame(customer, third.loadClass(CUSTOMER));
+
+        for (int i = 0; i < 50 && second.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(second.get());
+
+        // The first generation delegates to the current generation
+        assertSame(third.loadClass(UPDATER), first.loadClass(UPDATER));
+    }
+
+    /**
+     * Excludes must override includes, and adding prefixes must invalidate
+     * cached decisions.
+     */
+    public void testShouldLoadClass() throws Exception {
+        ReloadClassLoader loader = new ReloadClassLoader(new URL[0],
+            getClass().getClassLoader(), createConfigService());
+        loader.addInclude("com.mycorp.page");
+        loader.addInclude("com.mycorp.page.admin");
+        loader.addInclude("com.mycorp.controls.MyForm");
+        loader.addExclude("com.mycorp.page.account");
+
+        assertTrue(loader.shouldLoadClass("com.mycorp.page.HomePage"));
+        assertTrue(loader.shouldLoadClass("com.mycorp.page.admin.UserPage"));
+        assertTrue(loader.shouldLoadClass("com.mycorp.pages.OtherPage"));
+        assertTrue(loader.shouldLoadClass("com.mycorp.controls.MyForm$1"));
+        assertFalse(loader.shouldLoadClass("com.mycorp.page.account.LoginPage"));
+        assertFalse(loader.shouldLoadClass("com.mycorp.controls.Other"));
+        assertFalse(loader.shouldLoadClass("com.mycorp"));
+        assertFalse(loader.shouldLoadClass("java.lang.String"));
+
+        loader.addExclude("com.mycorp.page.Home");
+        assertFalse(loader.shouldLoadClass("com.mycorp.page.HomePage"));
+        loader.addInclude("com.mycorp.controls");
+        assertTrue(loader.shouldLoadClass("com.mycorp.controls.Other"));
+    }
+
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("classes", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    protected void tearDown() {
+        delete(dir);
+    }
+
+    private WeakReference<ReloadClassLoader> createSecondGeneration(
+        ReloadClassLoader first) throws Exception {
+
+        ReloadClassLoader second = createLoader();
+        second.addInclude(UPDATER);
+        assertEquals(2, second.inheritClasses(first));
+        assertSame(second, second.loadClass(UPDATER).getClassLoader());
+        return new WeakReference<ReloadClassLoader>(second);
+    }
+
+    private ReloadClassLoader createLoader() throws Exception {
+        ReloadClassLoader loader = new ReloadClassLoader(new URL[] { dir.toURI().toURL() },
+            getClass().getClassLoader(), createConfigService());
+        loader.addInclude(CUSTOMER);
+        loader.addInclude(HOLDER);
+        return loader;
+    }
+
+    private ConfigService createConfigService() {
+        final ConsoleLogService logService = new ConsoleLogService();
+        return (ConfigService) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { ConfigService.class }, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return "getLogService".equals(method.getName()) ? logService : null;
+                }
+            });
+    }
+
+    private File copyClass(Class type) throws Exception {
+        File file = new File(dir, type.getName().replace('.', '/') + ".class");
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(readBytes(type));
+        out.close();
+        return file;
+    }
+
+    private byte[] readBytes(Class type) throws Exception {
+        String path = "/" + type.getName().replace('.', '/') + ".class";
+        InputStream in = type.getResourceAsStream(path);
+        byte[] bytes = new byte[in.available()];
+        int offset = 0;
+        while (offset < bytes.length) {
+            offset += in.read(bytes, offset, bytes.length - offset);
+        }
+        in.close();
+        return bytes;
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (int i = 0; i < children.length; i++) {
+                delete(children[i]);
+            }
+        }
+        file.delete();
+    }
+
+    public static class CustomerHolder {
+
+        public Customer customer;
+
+        public java.util.List<Customer> customers;
+    }
+
+    public static class CustomerUpdater {
+
+        public void update(int index, Customer customer) {
+        }
+    }
+
+    public static class CustomerUpdaterCaller {
+
+        public void call(CustomerUpdater updater) {
+            updater.update(1, null);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package net.sf.clickclick.reload;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import junit.framework.TestCase;
+import org.apache.click.MockContext;
+
+public class ReloadMetricsTest extends TestCase {
+
+    /**
+     * Recorded requests, loaders and classes must be counted until the
+     * metrics are reset.
+     */
+    public void testCounters() {
+        ReloadMetrics metrics = new ReloadMetrics();
+        metrics.requestHandled(3000000L);
+        metrics.requestHandled(2000000L);
+        metrics.loaderCreated(0);
+        metrics.loaderCreated(7);
+        metrics.classDefined(1000000L, 100, false);
+        metrics.classDefined(4000000L, 50, true);
+        metrics.classpathResolved(6000000L);
+
+        assertEquals(2, metrics.getRequestCount());
+        assertEquals(5, metrics.getLoaderWaitTimeMillis());
+        assertEquals(2, metrics.getLoaderCount());
+        assertEquals(7, metrics.getInheritedClassCount());
+        assertEquals(2, metrics.getClassCount());
+        assertEquals(100, metrics.getBytesRead());
+        assertEquals(1, metrics.getBytecodeCacheHits());
+        assertEquals(5, metrics.getFindClassTimeMillis());
+        assertEquals(6, metrics.getClasspathTimeMillis());
+
+        metrics.reset();
+        assertEquals("ReloadMetrics[requests=0,loaders=0,classes=0,"
+            + "inheritedClasses=0,bytesRead=0,bytecodeCacheHits=0,"
+            + "findClassTimeMillis=0,classpathTimeMillis=0,"
+            + "loaderWaitTimeMillis=0]", metrics.toString());
+    }
+
+    /**
+     * The filter must publish its metrics as an MBean and a servlet context
+     * attribute, and withdraw both when it is destroyed.
+     */
+    public void testRegisterMetrics() throws Exception {
+        Map<String, String> params = new HashMap<String, String>();
+        Map<String, Object> attributes = new HashMap<String, Object>();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(
+            "net.sf.clickclick.reload:type=ReloadMetrics,name=\"reload-test\"");
+
+        ReloadClassFilter filter = new ReloadClassFilter();
+        filter.init(createFilterConfig(params, attributes));
+        try {
+            assertTrue(server.isRegistered(name));
+            assertSame(filter.getMetrics(), attributes.get(ReloadMetrics.class.getName()));
+            filter.getMetrics().requestHandled(0);
+            assertEquals(Long.valueOf(1), server.getAttribute(name, "RequestCount"));
+        } finally {
+            filter.destroy();
+        }
+        assertFalse(server.isRegistered(name));
+        assertFalse(attributes.containsKey(ReloadMetrics.class.getName()));
+
+        params.put("jmx", "false");
+        filter = new ReloadClassFilter();
+        filter.init(createFilterConfig(params, attributes));
+        assertFalse(server.isRegistered(name));
+        assertSame(filter.getMetrics(), attributes.get(ReloadMetrics.class.getName()));
+        filter.destroy();
+    }
+
+    /**
+     * The page must only reset the metrics when the reset is posted.
+     */
+    public void testResetOnPost() {
+        MockContext context = MockContext.initContext();
+        context.getMockRequest().setParameter("reset", "true");
+        ReloadMetrics metrics = new ReloadMetrics();
+        metrics.requestHandled(0);
+        context.getServletContext().setAttribute(ReloadMetrics.class.getName(), metrics);
+
+        ReloadMetricsPage page = new ReloadMetricsPage();
+        page.onGet();
+        assertEquals(1, metrics.getRequestCount());
+        assertNull(page.getPath());
+        assertTrue(context.getMockResponse().getDocument().indexOf(
+            "<form method=\"post\">") >= 0);
+
+        page.onPost();
+        assertEquals(0, metrics.getRequestCount());
+    }
+
+    private FilterConfig createFilterConfig(final Map<String, String> params,
+        final Map<String, Object> attributes) {
+
+        final ServletContext servletContext = (ServletContext)
+            Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { ServletContext.class }, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("setAttribute".equals(method.getName())) {
+                        attributes.put((String) args[0], args[1]);
+                    } else if ("removeAttribute".equals(method.getName())) {
+                        attributes.remove(args[0]);
+                    }
+                    return null;
+                }
+            });
+
+        return (FilterConfig) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { FilterConfig.class }, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("getFilterName".equals(method.getName())) {
+                        return "reload-test";
+                    } else if ("getInitParameter".equals(method.getName())) {
+                        return params.get(args[0]);
+                    } else if ("getServletContext".equals(method.getName())) {
+                        return servletContext;
+                    }
+                    return null;
+                }
+            });
+    }
+}
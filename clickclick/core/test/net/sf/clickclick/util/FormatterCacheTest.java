@@ -0,0 +1,71 @@
+package net.sf.clickclick.util;
+
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.util.Date;
+import java.util.Locale;
+import junit.framework.TestCase;
+
+public class FormatterCacheTest extends TestCase {
+
+    /**
+     * Cached formatters must format values the same as MessageFormat.
+     */
+    public void testFormat() {
+        String[] patterns = new String[] {
+            "{0,date,dd MMM yyyy}", "{0,date}", "{0,date,short}", "{0,time,long}",
+            "{0,number}", "{0,number,currency}", "{0,number,percent}",
+            "{0,number,integer}", "{0,number,#,##0.00}", "Joined {0,date,yyyy}",
+            "{0}", "{0,date,'day' dd}"
+        };
+        Locale[] locales = new Locale[] { Locale.US, Locale.GERMANY };
+        Date date = new Date(1234567890000L);
+        BigDecimal number = new BigDecimal("12345.678");
+
+        for (int i = 0; i < patterns.length; i++) {
+            for (int j = 0; j < locales.length; j++) {
+                String pattern = patterns[i];
+                Object value = pattern.indexOf("number") >= 0 ? (Object) number : date;
+                String expected = new MessageFormat(pattern, locales[j]).format(new Object[] { value });
+                assertEquals(pattern, expected, FormatterCache.format(pattern, locales[j], value));
+                // Formatted twice to use the cached formatter
+                assertEquals(pattern, expected, FormatterCache.format(pattern, locales[j], value));
+            }
+        }
+    }
+
+    /**
+     * Concurrent threads must not share a formatter.
+     */
+    public void testConcurrentFormat() throws Exception {
+        final String pattern = "{0,date,dd MMM yyyy HH:mm:ss}";
+        final Date[] dates = new Date[] { new Date(0L), new Date(1234567890000L) };
+        final String[] expected = new String[dates.length];
+        for (int i = 0; i < dates.length; i++) {
+            expected[i] = new MessageFormat(pattern, Locale.US).format(new Object[] { dates[i] });
+        }
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            int index = (i + offset) % dates.length;
+                            assertEquals(expected[index],
+                                FormatterCache.format(pattern, Locale.US, dates[index]));
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+        }
+        assertNull(String.valueOf(failure[0]), failure[0]);
+    }
+}
@@ -0,0 +1,162 @@
+package net.sf.clickclick.util;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.apache.click.MockContext;
+import org.apache.click.Page;
+import org.apache.click.control.AbstractControl;
+import org.apache.click.service.ConfigService;
+import org.apache.click.service.ConsoleLogService;
+import org.apache.click.service.LogService;
+import org.apache.click.service.XmlConfigService;
+
+public class MessageTableTest extends TestCase {
+
+    /**
+     * Messages overridden by the Page must not be shared with controls on
+     * other pages, or without a page.
+     */
+    public void testPageOverride() {
+        MockContext.initContext(Locale.ENGLISH);
+        MessageTable.clearCache();
+
+        LabelControl control = new LabelControl();
+        assertEquals("Control label en", control.getLabel());
+
+        LabelControl pageControl = new LabelControl();
+        new LabelPage().addControl(pageControl);
+        assertEquals("Page label", pageControl.getLabel());
+
+        LabelControl otherPageControl = new LabelControl();
+        new Page().addControl(otherPageControl);
+        assertEquals("Control label en", otherPageControl.getLabel());
+
+        assertEquals("Control label en", control.getLabel());
+        assertEquals("Page label", pageControl.getLabel());
+    }
+
+    /**
+     * In production mode, tables must be shared by controls with the same
+     * parent classes and locale only.
+     */
+    public void testSharedTables() {
+        MockContext context = MockContext.initContext(Locale.ENGLISH);
+        setConfigService(context, true);
+        MessageTable.clearCache();
+
+        LabelControl control = new LabelControl();
+        assertEquals("Control label en", control.getLabel());
+        assertEquals(1, control.lookups);
+        LabelControl otherControl = new LabelControl();
+        assertEquals("Control label en", otherControl.getLabel());
+        assertEquals(0, otherControl.lookups);
+
+        // A Page override gets its own table, shared by the Page controls
+        LabelControl pageControl = new LabelControl();
+        new LabelPage().addControl(pageControl);
+        assertEquals("Page label", pageControl.getLabel());
+        assertEquals(1, pageControl.lookups);
+        LabelControl otherPageControl = new LabelControl();
+        new LabelPage().addControl(otherPageControl);
+        assertEquals("Page label", otherPageControl.getLabel());
+        assertEquals(0, otherPageControl.lookups);
+
+        LabelControl plainPageControl = new LabelControl();
+        new Page().addControl(plainPageControl);
+        assertEquals("Control label en", plainPageControl.getLabel());
+        assertEquals(1, plainPageControl.lookups);
+
+        context = MockContext.initContext(Locale.FRENCH);
+        setConfigService(context, true);
+        LabelControl frenchControl = new LabelControl();
+        assertEquals("Control label fr", frenchControl.getLabel());
+        assertEquals(1, frenchControl.lookups);
+    }
+
+    /**
+     * In development mode, messages must be resolved on every call.
+     */
+    public void testDevelopmentMode() {
+        MockContext context = MockContext.initContext(Locale.ENGLISH);
+        setConfigService(context, false);
+        MessageTable.clearCache();
+
+        LabelControl control = new LabelControl();
+        assertEquals("Control label en", control.getLabel());
+        assertEquals("Control label en", control.getLabel());
+        assertEquals(2, control.lookups);
+    }
+
+    private void setConfigService(MockContext context, boolean productionMode) {
+        context.getServletContext().setAttribute(ConfigService.CONTEXT_NAME,
+            new ModeConfigService(productionMode));
+    }
+
+    /**
+     * Provides a config service in the given mode.
+     */
+    static class ModeConfigService extends XmlConfigService {
+
+        final boolean productionMode;
+
+        ModeConfigService(boolean productionMode) {
+            this.productionMode = productionMode;
+        }
+
+        public boolean isProductionMode() {
+            return productionMode;
+        }
+
+        public boolean isProfileMode() {
+            return false;
+        }
+
+        public LogService getLogService() {
+            return new ConsoleLogService();
+        }
+    }
+
+    /**
+     * Provides a control with a message table.
+     */
+    static class LabelControl extends AbstractControl {
+
+        private static final long serialVersionUID = 1L;
+
+        static final String[] MESSAGE_NAMES = { "label" };
+
+        int lookups;
+
+        LabelControl() {
+            super("label");
+        }
+
+        public Map<String, String> getMessages() {
+            String language = getContext().getLocale().getLanguage();
+            return Collections.singletonMap("label", "Control label " + language);
+        }
+
+        public String getMessage(String name) {
+            lookups++;
+            return super.getMessage(name);
+        }
+
+        String getLabel() {
+            return MessageTable.getMessage(this, MESSAGE_NAMES, 0);
+        }
+    }
+
+    /**
+     * Provides a page which overrides the control label.
+     */
+    static class LabelPage extends Page {
+
+        private static final long serialVersionUID = 1L;
+
+        public Map<String, String> getMessages() {
+            return Collections.singletonMap("label", "Page label");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package net.sf.clickclick.util;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+import net.sf.clickclick.domain.Customer;
+
+public class PropertyAccessorTest extends TestCase {
+
+    /**
+     * Simple and nested properties must be resolved, including Map values.
+     */
+    public void testGetValue() {
+        Customer customer = new Customer();
+        customer.setName("John");
+        customer.setDateJoined(new Date(1000L));
+
+        PropertyAccessor accessor = PropertyAccessor.getAccessor(Customer.class, "name");
+        assertSame(accessor, PropertyAccessor.getAccessor(Customer.class, "name"));
+        assertEquals("John", accessor.getValue(customer));
+
+        accessor = PropertyAccessor.getAccessor(Customer.class, "dateJoined.time");
+        assertEquals(new Long(1000L), accessor.getValue(customer));
+
+        // Null intermediate values resolve to null
+        customer.setDateJoined(null);
+        assertNull(accessor.getValue(customer));
+
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("customer", customer);
+        accessor = PropertyAccessor.getAccessor(HashMap.class, "customer.name");
+        assertEquals("John", accessor.getValue(map));
+
+        accessor = PropertyAccessor.getAccessor(Customer.class, "unknown");
+        try {
+            accessor.getValue(customer);
+            fail("Unknown property must fail");
+        } catch (RuntimeException expected) {
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.apache.click.service;
+
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import javax.servlet.ServletContext;
+import javax.xml.parsers.DocumentBuilderFactory;
+import junit.framework.TestCase;
+import org.apache.click.service.pages.AdminPage;
+import org.apache.click.service.pages.HomePage;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+public class ClickClickConfigServiceTest extends TestCase {
+
+    private static final String PAGES_PACKAGE = "org.apache.click.service";
+
+    /**
+     * Cached and indexed automapped pages must not be returned once their
+     * template is deleted.
+     */
+    public void testDeletedTemplate() {
+        DevConfigService service = new DevConfigService("/pages/home.htm");
+        assertEquals(HomePage.class, service.getPageClass("/pages/home.htm"));
+        assertEquals(HomePage.class, service.getPageClass("/pages/home.htm"));
+
+        service.templates.remove("/pages/home.htm");
+        assertNull(service.getPageClass("/pages/home.htm"));
+
+        service.templates.add("/pages/home.htm");
+        assertEquals(HomePage.class, service.getPageClass("/pages/home.htm"));
+
+        service = new DevConfigService("/pages/home.htm");
+        service.indexTemplates(PAGES_PACKAGE,
+            Arrays.asList(new String[] { "/pages/home.htm" }));
+        service.templates.clear();
+        assertNull(service.getPageClass("/pages/home.htm"));
+    }
+
+    /**
+     * Concurrent requests must resolve the page class while the cache is
+     * invalidated, without locking.
+     */
+    public void testConcurrentPageClass() throws Exception {
+        final DevConfigService service = new DevConfigService("/pages/home.htm",
+            "/pages/admin.htm");
+        final List<Throwable> failures =
+            Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch done = new CountDownLatch(4);
+
+        for (int i = 0; i < 4; i++) {
+            new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 500; j++) {
+                            assertEquals(HomePage.class,
+                                service.getPageClass("/pages/home.htm"));
+                            assertEquals(AdminPage.class,
+                                service.getPageClass("/pages/admin.htm"));
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        while (done.getCount() > 0) {
+            service.invalidatePageCache();
+            Thread.yield();
+        }
+        done.await();
+        assertEquals(failures.toString(), 0, failures.size());
+    }
+
+    /**
+     * Paths found by the path lookup must be cached per class, including
+     * classes without a path, until the cache is invalidated.
+     */
+    public void testPagePathCache() {
+        DevConfigService service = new DevConfigService("/pages/home-page.htm");
+        assertEquals("/pages/home-page.htm", service.getPagePath(HomePage.class));
+        int lookups = service.resourceLookups;
+        assertEquals("/pages/home-page.htm", service.getPagePath(HomePage.class));
+        assertNull(service.getPagePath(AdminPage.class));
+        int missLookups = service.resourceLookups;
+        assertTrue(missLookups > lookups);
+        assertNull(service.getPagePath(AdminPage.class));
+        assertEquals(missLookups, service.resourceLookups);
+
+        service.templates.add("/pages/admin-page.htm");
+        service.invalidatePageCache();
+        assertEquals("/pages/admin-page.htm", service.getPagePath(AdminPage.class));
+    }
+
+    /**
+     * Manually mapped pages must be found by class, and a class mapped to
+     * several paths must be rejected.
+     */
+    public void testManuallyMappedPage() throws Exception {
+        DevConfigService service = new DevConfigService();
+        service.buildManualPageMapping(parse("<pages>"
+            + "<page path='admin.htm' classname='pages.AdminPage'/></pages>"),
+            PAGES_PACKAGE);
+        service.buildClassMap();
+
+        assertEquals("/admin.htm", service.getPagePath(AdminPage.class));
+        assertEquals(AdminPage.class, service.getPageClass("/admin.htm"));
+        assertEquals(AdminPage.class, service.getPageClass("/admin.htm"));
+        assertEquals(0, service.resourceLookups);
+
+        service.buildManualPageMapping(parse("<pages>"
+            + "<page path='manage.htm' classname='pages.AdminPage'/></pages>"),
+            PAGES_PACKAGE);
+        service.buildClassMap();
+        try {
+            service.getPagePath(AdminPage.class);
+            fail("AdminPage is mapped to two paths");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * The public fields of a page class must be read once until the cache is
+     * invalidated.
+     */
+    public void testPageFields() {
+        DevConfigService service = new DevConfigService();
+        Field[] fields = service.getPageFieldArray(HomePage.class);
+        assertSame(fields, service.getPageFieldArray(HomePage.class));
+        Field title = service.getPageField(HomePage.class, "title");
+        assertTrue(Arrays.asList(fields).contains(title));
+        assertSame(title, service.getPageField(HomePage.class, "title"));
+        assertSame(title, service.getPageFields(HomePage.class).get("title"));
+        assertNull(service.getPageField(HomePage.class, "missing"));
+
+        service.invalidatePageCache();
+        assertNotSame(fields, service.getPageFieldArray(HomePage.class));
+    }
+
+    private Element parse(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+            .parse(new InputSource(new StringReader(xml))).getDocumentElement();
+    }
+
+    /**
+     * Provides a development mode config service with in memory templates.
+     */
+    static class DevConfigService extends ClickClickConfigService {
+
+        final Set<String> templates = new HashSet<String>();
+
+        int resourceLookups;
+
+        final ServletContext servletContext = (ServletContext)
+            Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { ServletContext.class }, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                    throws Exception {
+                    if (!method.getName().equals("getResource")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    resourceLookups++;
+                    return templates.contains(args[0])
+                        ? new URL("file:/webapp" + args[0]) : null;
+                }
+            });
+
+        DevConfigService(String... templates) {
+            this.templates.addAll(Arrays.asList(templates));
+            pagePackages.add(PAGES_PACKAGE);
+            commonHeaders = Collections.EMPTY_MAP;
+        }
+
+        public boolean isProductionMode() {
+            return false;
+        }
+
+        public boolean isProfileMode() {
+            return false;
+        }
+
+        public ServletContext getServletContext() {
+            return servletContext;
+        }
+
+        public LogService getLogService() {
+            return new ConsoleLogService();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.apache.click.service;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+public class PageIndexTest extends TestCase {
+
+    /**
+     * Both directions of the index must stay consistent.
+     */
+    public void testPutAndRemove() {
+        PageIndex index = new PageIndex();
+        index.put("/home.htm", "com.mycorp.HomePage");
+        index.put("/index.htm", "com.mycorp.HomePage");
+        assertEquals("com.mycorp.HomePage", index.getClassName("/home.htm"));
+        assertEquals(Arrays.asList("/home.htm", "/index.htm"),
+            Arrays.asList(index.getPaths("com.mycorp.HomePage")));
+
+        // The first indexed class name wins
+        assertFalse(index.putIfAbsent("/home.htm", "com.mycorp.Home"));
+
+        // Remapping a path removes it from the previous class name
+        index.put("/index.htm", "com.mycorp.IndexPage");
+        assertEquals(Arrays.asList("/home.htm"),
+            Arrays.asList(index.getPaths("com.mycorp.HomePage")));
+
+        index.remove("/home.htm");
+        assertNull(index.getClassName("/home.htm"));
+        assertEquals(0, index.getPaths("com.mycorp.HomePage").length);
+        assertEquals(1, index.size());
+    }
+}